@@ -0,0 +1,150 @@
+package com.example.mirutinavisual;
+
+import android.os.Debug;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+// Compara el parser en streaming con el anterior (String completo + JSONArray)
+// sobre una respuesta sintética del tamaño de una búsqueda común ("comer", "casa"...)
+@RunWith(AndroidJUnit4.class)
+public class PictogramJsonParserBenchmark {
+
+    private static final int RESPONSE_ENTRIES = 400;
+    private static final int KEYWORDS_PER_ENTRY = 8;
+    private static final int MAX_RESULTS = 12;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 30;
+
+    private interface ParseRun {
+        List<Pictogram> run(Reader reader) throws Exception;
+    }
+
+    @Test
+    public void streamingParser_reportsTimeAndAllocations() throws Exception {
+        String json = buildResponse();
+
+        long[] legacy = measure(json, this::legacyParse);
+        long[] streaming = measure(json, reader -> PictogramJsonParser.parse(reader, MAX_RESULTS));
+
+        System.out.println("PARSER_BENCHMARK: respuesta de " + json.length() + " caracteres, "
+                + RESPONSE_ENTRIES + " entradas");
+        System.out.println("PARSER_BENCHMARK: anterior  -> " + legacy[0] / 1000 + " µs, "
+                + legacy[1] / 1024 + " KB asignados por búsqueda");
+        System.out.println("PARSER_BENCHMARK: streaming -> " + streaming[0] / 1000 + " µs, "
+                + streaming[1] / 1024 + " KB asignados por búsqueda");
+        // Sin comparar: en un dispositivo compartido el orden puede cambiar entre ejecuciones
+    }
+
+    @Test
+    public void streamingParser_returnsSameResultsAsLegacy() throws Exception {
+        String json = buildResponse();
+
+        List<Pictogram> expected = legacyParse(new StringReader(json));
+        List<Pictogram> actual = PictogramJsonParser.parse(new StringReader(json), MAX_RESULTS);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            List<String> expectedKeywords = expected.get(i).getKeywords();
+            assertEquals(expectedKeywords.subList(0, Math.min(expectedKeywords.size(),
+                    PictogramJsonParser.MAX_KEYWORDS_PER_PICTOGRAM)), actual.get(i).getKeywords());
+        }
+    }
+
+    // Devuelve {nanosegundos medios, bytes asignados medios} por búsqueda
+    private long[] measure(String json, ParseRun parser) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            parser.run(new StringReader(json));
+        }
+
+        Runtime.getRuntime().gc();
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            parser.run(new StringReader(json));
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - bytesBefore;
+
+        return new long[]{elapsed / MEASURED_ROUNDS, allocated / MEASURED_ROUNDS};
+    }
+
+    private static long allocatedBytes() {
+        String value = Debug.getRuntimeStat("art.gc.bytes-allocated");
+        return value != null ? Long.parseLong(value) : 0;
+    }
+
+    // Copia del parser anterior de ArasaacApiService, incluida la lectura a String
+    private List<Pictogram> legacyParse(Reader input) throws IOException, JSONException {
+        BufferedReader reader = new BufferedReader(input);
+        StringBuilder response = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            response.append(line);
+        }
+        reader.close();
+
+        List<Pictogram> pictograms = new ArrayList<>();
+        JSONArray jsonArray = new JSONArray(response.toString());
+        int maxResults = Math.min(jsonArray.length(), MAX_RESULTS);
+        for (int i = 0; i < maxResults; i++) {
+            JSONObject pictogramJson = jsonArray.getJSONObject(i);
+            int id = pictogramJson.getInt("_id");
+
+            List<String> keywords = new ArrayList<>();
+            if (pictogramJson.has("keywords")) {
+                JSONArray keywordsArray = pictogramJson.getJSONArray("keywords");
+                for (int j = 0; j < keywordsArray.length(); j++) {
+                    JSONObject keywordObj = keywordsArray.getJSONObject(j);
+                    if (keywordObj.has("keyword")) {
+                        keywords.add(keywordObj.getString("keyword"));
+                    }
+                }
+            }
+            if (keywords.isEmpty()) {
+                keywords.add("Pictograma " + id);
+            }
+            pictograms.add(new Pictogram(id, keywords));
+        }
+        return pictograms;
+    }
+
+    // Misma forma que la respuesta real de /es/search: muchos campos que no usamos
+    private static String buildResponse() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < RESPONSE_ENTRIES; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"_id\":").append(2000 + i)
+                    .append(",\"schematic\":false,\"sex\":false,\"violence\":false,\"aac\":true,\"aacColor\":true")
+                    .append(",\"skin\":true,\"hair\":true,\"downloads\":").append(i * 7)
+                    .append(",\"categories\":[\"alimentación\",\"acción\",\"vida diaria\"]")
+                    .append(",\"synsets\":[\"01166351-v\",\"01168468-v\"]")
+                    .append(",\"tags\":[\"alimentación\",\"comida\",\"acción\",\"core vocabulary-knowledge\"]")
+                    .append(",\"created\":\"2017-02-15T00:00:00.000Z\",\"lastUpdated\":\"2023-11-08T11:57:39.523Z\"")
+                    .append(",\"keywords\":[");
+            for (int k = 0; k < KEYWORDS_PER_ENTRY; k++) {
+                if (k > 0) json.append(',');
+                json.append("{\"type\":3,\"keyword\":\"comer ").append(i).append('_').append(k)
+                        .append("\",\"hasLocution\":true,\"plural\":\"comeres\"")
+                        .append(",\"meaning\":\"Ingerir alimento sólido o líquido para nutrirse.\"}");
+            }
+            json.append("]}");
+        }
+        return json.append(']').toString();
+    }
+}
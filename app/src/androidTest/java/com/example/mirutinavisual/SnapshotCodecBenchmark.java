@@ -0,0 +1,137 @@
+package com.example.mirutinavisual;
+
+import android.os.Debug;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.firebase.database.core.utilities.encoding.CustomClassMapper;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+// Compara SnapshotCodec con la lectura anterior, DataSnapshot.getValue(Activity.class), sobre
+// userActivities/<uid> con 500 actividades. getValue(Class) pasa el mismo árbol de getValue()
+// por CustomClassMapper, así que se llama a este directamente con los mismos datos.
+@RunWith(AndroidJUnit4.class)
+public class SnapshotCodecBenchmark {
+
+    private static final int ACTIVITIES = 500;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 30;
+
+    private interface ParseRun {
+        List<Activity> run(Map<String, Object> activities);
+    }
+
+    @Test
+    public void codec_reportsTimeAndAllocations() {
+        Map<String, Object> activities = buildActivities();
+
+        long[] reflection = measure(activities, this::reflectionParse);
+        long[] codec = measure(activities, SnapshotCodecBenchmark::codecParse);
+
+        System.out.println("CODEC_BENCHMARK: " + ACTIVITIES + " actividades");
+        System.out.println("CODEC_BENCHMARK: reflexión -> " + reflection[0] / 1000 + " µs, "
+                + reflection[1] / 1024 + " KB asignados por lectura");
+        System.out.println("CODEC_BENCHMARK: codec     -> " + codec[0] / 1000 + " µs, "
+                + codec[1] / 1024 + " KB asignados por lectura");
+        // Solo informa: el tiempo depende del dispositivo. La equivalencia se comprueba abajo
+    }
+
+    @Test
+    public void codec_returnsSameActivitiesAsReflection() {
+        Map<String, Object> activities = buildActivities();
+
+        List<Activity> expected = reflectionParse(activities);
+        List<Activity> actual = codecParse(activities);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Activity e = expected.get(i);
+            Activity a = actual.get(i);
+            assertEquals(e.getId(), a.getId());
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getTime(), a.getTime());
+            assertEquals(e.getPictogramId(), a.getPictogramId());
+            assertEquals(e.getPictogramKeyword(), a.getPictogramKeyword());
+            assertEquals(e.isCompleted(), a.isCompleted());
+            assertEquals(e.getCreatedAt(), a.getCreatedAt());
+            assertEquals(e.getUserId(), a.getUserId());
+            assertEquals(e.isSequence(), a.isSequence());
+            assertEquals(e.getCurrentStepIndex(), a.getCurrentStepIndex());
+        }
+    }
+
+    // Devuelve {nanosegundos medios, bytes asignados medios} por lectura
+    private long[] measure(Map<String, Object> activities, ParseRun parser) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            parser.run(activities);
+        }
+
+        Runtime.getRuntime().gc();
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            parser.run(activities);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - bytesBefore;
+
+        return new long[]{elapsed / MEASURED_ROUNDS, allocated / MEASURED_ROUNDS};
+    }
+
+    private static long allocatedBytes() {
+        String value = Debug.getRuntimeStat("art.gc.bytes-allocated");
+        return value != null ? Long.parseLong(value) : 0;
+    }
+
+    // Copia de la lectura anterior de ActivityRepository.parseActivity
+    private List<Activity> reflectionParse(Map<String, Object> activities) {
+        List<Activity> result = new ArrayList<>(activities.size());
+        for (Map.Entry<String, Object> entry : activities.entrySet()) {
+            Activity activity = CustomClassMapper.convertToCustomClass(entry.getValue(), Activity.class);
+            activity.setId(entry.getKey());
+            Object isSequence = ((Map<?, ?>) entry.getValue()).get("isSequence");
+            activity.setSequence(Boolean.TRUE.equals(isSequence));
+            result.add(activity);
+        }
+        return result;
+    }
+
+    private static List<Activity> codecParse(Map<String, Object> activities) {
+        List<Activity> result = new ArrayList<>(activities.size());
+        for (Map.Entry<String, Object> entry : activities.entrySet()) {
+            result.add(SnapshotCodec.readActivity(entry.getKey(), entry.getValue()));
+        }
+        return result;
+    }
+
+    // Misma forma que devuelve getValue() para userActivities/<uid>: Long para los números
+    private static Map<String, Object> buildActivities() {
+        Map<String, Object> activities = new HashMap<>();
+        for (int i = 0; i < ACTIVITIES; i++) {
+            Map<String, Object> header = new HashMap<>();
+            header.put("id", "act" + i);
+            header.put("name", "Actividad " + i);
+            header.put("time", String.format(Locale.US, "%02d:%02d", i % 24, i % 60));
+            header.put("pictogramId", 2000L + i);
+            header.put("pictogramKeyword", "comer");
+            header.put("completed", i % 3 == 0);
+            header.put("createdAt", 1700000000000L + i);
+            header.put("userId", "uid1");
+            header.put("isSequence", i % 2 == 0);
+            header.put("totalSteps", i % 2 == 0 ? 4L : 0L);
+            header.put("currentStepIndex", (long) (i % 4));
+            activities.put("act" + i, header);
+        }
+        return activities;
+    }
+}
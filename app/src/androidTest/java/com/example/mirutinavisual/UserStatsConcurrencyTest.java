@@ -0,0 +1,132 @@
+package com.example.mirutinavisual;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+// Dos "dispositivos" (dos FirebaseApp con conexiones separadas) completan actividades
+// a la vez contra el emulador de Realtime Database. Con setValue del objeto completo
+// se perdían completadas; con los incrementos y la transacción del día deben contarse todas.
+// Las reglas de firebase.json exigen auth.uid === $uid: los tres clientes inician sesión con
+// la misma cuenta del emulador de Authentication.
+// Requiere: firebase emulators:start --only auth,database (puertos 9099 y 9000)
+@RunWith(AndroidJUnit4.class)
+public class UserStatsConcurrencyTest {
+
+    // Host del ordenador visto desde el emulador de Android
+    private static final String EMULATOR_HOST = "10.0.2.2";
+    private static final int EMULATOR_PORT = 9000;
+    private static final int AUTH_EMULATOR_PORT = 9099;
+    private static final String TEST_PASSWORD = "concurrency-test";
+    private static final int COMPLETIONS_PER_DEVICE = 15;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    @Test
+    public void concurrentCompletionsFromTwoDevices_areAllCounted() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FirebaseApp phoneApp = emulatorApp(context, "caregiver-phone");
+        FirebaseApp tabletApp = emulatorApp(context, "child-tablet");
+        FirebaseApp readerApp = emulatorApp(context, "reader");
+
+        // Cuenta nueva en cada ejecución: el uid es el nodo de userStats que se comprueba
+        String email = "concurrency-" + System.currentTimeMillis() + "@test.example";
+        String userId = Tasks.await(FirebaseAuth.getInstance(phoneApp)
+                        .createUserWithEmailAndPassword(email, TEST_PASSWORD), TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .getUser().getUid();
+        for (FirebaseApp app : new FirebaseApp[]{tabletApp, readerApp}) {
+            Tasks.await(FirebaseAuth.getInstance(app).signInWithEmailAndPassword(email, TEST_PASSWORD),
+                    TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+
+        FirebaseDatabase caregiverPhone = FirebaseDatabase.getInstance(phoneApp);
+        FirebaseDatabase childTablet = FirebaseDatabase.getInstance(tabletApp);
+        DatabaseReference phoneStats = caregiverPhone.getReference("userStats").child(userId);
+        Tasks.await(phoneStats.removeValue(), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        int total = COMPLETIONS_PER_DEVICE * 2;
+        CountDownLatch done = new CountDownLatch(total);
+        AtomicInteger failures = new AtomicInteger();
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+        UserStatsTransaction.OnStatsCommittedListener listener = new UserStatsTransaction.OnStatsCommittedListener() {
+            @Override
+            public void onStatsCommitted(UserStats stats) {
+                done.countDown();
+            }
+
+            @Override
+            public void onStatsFailed(String error) {
+                failures.incrementAndGet();
+                errors.add(error);
+                done.countDown();
+            }
+        };
+
+        // Lanzar todas sin esperar, intercalando dispositivos para forzar conflictos.
+        // Cada completada: los totales en un updateChildren y el día y la racha en la transacción
+        List<Task<Void>> increments = new ArrayList<>();
+        for (int i = 0; i < COMPLETIONS_PER_DEVICE; i++) {
+            for (FirebaseDatabase device : new FirebaseDatabase[]{caregiverPhone, childTablet}) {
+                Map<String, Object> updates = new HashMap<>();
+                UserStatsTransaction.addCounterIncrements(updates, userId, 0);
+                increments.add(device.getReference().updateChildren(updates));
+                device.getReference("userStats").child(userId)
+                        .runTransaction(new UserStatsTransaction(userId, listener));
+            }
+        }
+        Tasks.await(Tasks.whenAll(increments.toArray(new Task<?>[0])), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertTrue("Las transacciones no terminaron: ¿está el emulador en " + EMULATOR_HOST + ":" + EMULATOR_PORT + "?",
+                done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals("Transacciones fallidas: " + errors, 0, failures.get());
+
+        // Leer desde un tercer cliente: el valor del servidor, no la caché de ninguno
+        FirebaseDatabase reader = FirebaseDatabase.getInstance(readerApp);
+        DataSnapshot snapshot = Tasks.await(reader.getReference("userStats").child(userId).get(),
+                TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        UserStats stats = snapshot.getValue(UserStats.class);
+
+        assertNotNull(stats);
+        assertEquals(total, stats.getTotalActivitiesCompleted());
+        assertEquals(total, stats.getActivitiesCompletedToday());
+        assertEquals(total * 10, stats.getTotalPoints());
+        assertEquals(1, stats.getCurrentStreak());
+
+        Tasks.await(phoneStats.removeValue(), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static FirebaseApp emulatorApp(Context context, String appName) {
+        try {
+            return FirebaseApp.getInstance(appName);
+        } catch (IllegalStateException e) {
+            // useEmulator solo se puede llamar antes del primer uso de cada instancia
+            FirebaseApp app = FirebaseApp.initializeApp(context, FirebaseApp.getInstance().getOptions(), appName);
+            FirebaseAuth.getInstance(app).useEmulator(EMULATOR_HOST, AUTH_EMULATOR_PORT);
+            FirebaseDatabase.getInstance(app).useEmulator(EMULATOR_HOST, EMULATOR_PORT);
+            return app;
+        }
+    }
+}
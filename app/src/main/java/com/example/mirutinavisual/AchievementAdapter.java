@@ -9,8 +9,6 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
-
 import java.util.List;
 
 public class AchievementAdapter extends RecyclerView.Adapter<AchievementAdapter.AchievementViewHolder> {
@@ -50,12 +48,9 @@ public class AchievementAdapter extends RecyclerView.Adapter<AchievementAdapter.
         
         // Configurar imagen del pictograma
         if (achievement.getPictogramId() != null && !achievement.getPictogramId().isEmpty()) {
-            String imageUrl = "https://api.arasaac.org/api/pictograms/" + achievement.getPictogramId() + "?download=false";
-            Glide.with(holder.itemView.getContext())
-                .load(imageUrl)
-                .placeholder(R.drawable.ic_placeholder)
-                .error(R.drawable.ic_error)
-                .into(holder.achievementImageView);
+            PictogramImageLoader.load(holder.achievementImageView,
+                    PictogramImageLoader.parseId(achievement.getPictogramId()), PictogramSize.THUMBNAIL,
+                    R.drawable.ic_placeholder, R.drawable.ic_error);
         } else {
             holder.achievementImageView.setImageResource(R.drawable.ic_placeholder);
         }
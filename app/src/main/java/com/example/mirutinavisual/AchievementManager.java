@@ -8,12 +8,16 @@ import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
 import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class AchievementManager {
     
@@ -28,6 +32,13 @@ public class AchievementManager {
     
     private List<Achievement> allAchievements;
     private UserStats currentUserStats;
+    // IDs de logros ya desbloqueados en Firebase (la transacción los lee desde otro hilo)
+    private final Set<String> unlockedIds = ConcurrentHashMap.newKeySet();
+    private boolean stateLoaded = false;
+    private boolean stateLoading = false;
+    private final List<Runnable> pendingStateCallbacks = new ArrayList<>();
+    // Usuarios ya revisados en este proceso (reconcileOnLaunch)
+    private static final Set<String> reconciledUsers = ConcurrentHashMap.newKeySet();
     
     public AchievementManager(Context context) {
         this.context = context;
@@ -36,6 +47,12 @@ public class AchievementManager {
         this.allAchievements = new ArrayList<>();
         
         initializeAchievements();
+        
+        // Adelantar las lecturas para no esperarlas al completar
+        if (firebaseAuth.getCurrentUser() != null) {
+            preloadState(firebaseAuth.getCurrentUser().getUid(), null);
+            reconcileOnLaunch(firebaseAuth.getCurrentUser().getUid());
+        }
     }
     
     public void setOnAchievementUnlockedListener(OnAchievementUnlockedListener listener) {
@@ -97,27 +114,264 @@ public class AchievementManager {
         System.out.println("ACHIEVEMENTS: Inicializados " + allAchievements.size() + " logros");
     }
     
-    // Método principal: verificar logros cuando se completa una actividad
-    public void onActivityCompleted() {
-        if (firebaseAuth.getCurrentUser() == null) return;
+    public interface OnCompletionCommittedListener {
+        void onCompletionCommitted(List<Achievement> newAchievements);
+        void onCompletionFailed(String error);
+    }
+    
+    // Cargar en memoria estadísticas y logros ya desbloqueados antes de completar
+    private void preloadState(String userId, Runnable onComplete) {
+        if (stateLoaded) {
+            if (onComplete != null) onComplete.run();
+            return;
+        }
+        if (onComplete != null) {
+            pendingStateCallbacks.add(onComplete);
+        }
+        if (stateLoading) return;
+        stateLoading = true;
+        
+        int[] remaining = {2};
+        Runnable onPartLoaded = () -> {
+            if (--remaining[0] > 0) return;
+            stateLoading = false;
+            stateLoaded = true;
+            List<Runnable> callbacks = new ArrayList<>(pendingStateCallbacks);
+            pendingStateCallbacks.clear();
+            for (Runnable callback : callbacks) {
+                callback.run();
+            }
+        };
+        
+        // Copia local mientras llega Firebase (sin conexión puede no llegar)
+        LocalRoutineStore localStore = LocalRoutineStore.getInstance(context);
+        localStore.loadUserStats(userId, stats -> {
+            if (stats != null && currentUserStats == null) currentUserStats = stats;
+        });
+        localStore.loadUnlockedAchievements(userId, ids -> {
+            if (ids != null && !stateLoaded) unlockedIds.addAll(ids);
+        });
+        
+        loadUserStats(userId, onPartLoaded);
+        databaseReference.child("userAchievements").child(userId)
+            .addListenerForSingleValueEvent(new ValueEventListener() {
+                @Override
+                public void onDataChange(DataSnapshot dataSnapshot) {
+                    Set<String> loaded = new HashSet<>();
+                    for (DataSnapshot achSnapshot : dataSnapshot.getChildren()) {
+                        if (SnapshotCodec.readAchievementUnlocked(achSnapshot.getValue())) {
+                            loaded.add(achSnapshot.getKey());
+                        }
+                    }
+                    // Sin vaciar antes: una transacción en curso puede estar leyendo el conjunto
+                    unlockedIds.addAll(loaded);
+                    unlockedIds.retainAll(loaded);
+                    localStore.saveUnlockedAchievements(userId, unlockedIds);
+                    onPartLoaded.run();
+                }
+                
+                @Override
+                public void onCancelled(DatabaseError databaseError) {
+                    System.out.println("ACHIEVEMENTS: Error al cargar logros: " + databaseError.getMessage());
+                    onPartLoaded.run();
+                }
+            });
+    }
+    
+    // Método principal: completar una actividad. Nada espera a las lecturas de preloadState,
+    // que sin conexión y sin caché no llegan nunca:
+    // 1) Una sola escritura (SyncOutbox, guardada en disco hasta que Firebase la confirma)
+    //    con todo lo que se puede confirmar junto: el progreso pendiente, completed, los
+    //    totales de userStats con ServerValue.increment y los logros nuevos. Los logros se
+    //    calculan con las estadísticas cargadas más esta completada.
+    // 2) El registro por días en su propia transacción (CompletionLog.recordStatus), que
+    //    suma en los contadores solo si la entrada es nueva.
+    // 3) El contador del día y la racha en una transacción sobre userStats/<uid>: son los
+    //    únicos campos que dependen del valor anterior. Si con el valor confirmado se
+    //    cumple algún logro más (p. ej. por completadas desde otro dispositivo) se guarda.
+    // Una transacción no sobrevive al proceso: la del paso 3 queda anotada en disco y se
+    // repite en el siguiente arranque (reconcileOnLaunch).
+    public void commitActivityCompletion(String activityId, OnCompletionCommittedListener callback) {
+        commitActivityCompletion(activityId, null, callback);
+    }
+    
+    // extraUpdates: otras rutas desde la raíz que van en la misma escritura
+    // (p. ej. userActivitySteps/<uid>/<id>/2/completed)
+    public void commitActivityCompletion(String activityId, Map<String, Object> extraUpdates,
+                                         OnCompletionCommittedListener callback) {
+        if (firebaseAuth.getCurrentUser() == null) {
+            if (callback != null) callback.onCompletionFailed("Usuario no autenticado");
+            return;
+        }
         
         String userId = firebaseAuth.getCurrentUser().getUid();
+        long completedAt = System.currentTimeMillis();
         
-        // Cargar estadísticas actuales
-        loadUserStats(userId, () -> {
-            // Actualizar estadísticas
-            if (currentUserStats == null) {
-                currentUserStats = new UserStats(userId);
+        // Estadísticas esperadas tras esta completada: deciden los logros de la escritura
+        UserStats projected = currentUserStats != null
+                ? SnapshotCodec.readUserStats(SnapshotCodec.writeUserStats(currentUserStats))
+                : new UserStats(userId);
+        projected.onActivityCompleted(completedAt);
+        currentUserStats = projected;
+        List<Achievement> newAchievements = findNewAchievements(projected);
+        // Que otra finalización seguida no vuelva a desbloquearlos
+        for (Achievement achievement : newAchievements) {
+            unlockedIds.add(achievement.getId());
+        }
+        
+        if (activityId != null) {
+            CompletionLog.recordStatus(databaseReference, userId, activityId, true, completedAt,
+                    rollups -> sendActivityCompletion(userId, rollups));
+            ActivityRepository.resolveHeaderPaths(userId, activityId, headerPaths ->
+                    commitUpdates(userId, headerPaths, extraUpdates, newAchievements, completedAt, callback));
+        } else {
+            commitUpdates(userId, new ArrayList<>(), extraUpdates, newAchievements, completedAt, callback);
+        }
+        
+        // Refrescar los logros desbloqueados para la próxima, sin esperar
+        preloadState(userId, null);
+        // Anotada en disco hasta que la transacción se confirme
+        LocalRoutineStore.getInstance(context).addPendingStatsCompletion(userId, completedAt);
+        runStatsTransaction(userId, completedAt);
+    }
+    
+    private void commitUpdates(String userId, List<String> headerPaths, Map<String, Object> extraUpdates,
+                               List<Achievement> newAchievements, long completedAt,
+                               OnCompletionCommittedListener callback) {
+        Map<String, Object> updates = new HashMap<>();
+        if (extraUpdates != null) {
+            updates.putAll(extraUpdates);
+        }
+        for (String headerPath : headerPaths) {
+            updates.put(headerPath + "/completed", true);
+        }
+        UserStatsTransaction.addCounterIncrements(updates, userId, newAchievements.size());
+        addAchievementUpdates(updates, userId, newAchievements, completedAt);
+        
+        SyncOutbox.getInstance(context).updateChildren(userId, updates)
+            .addOnSuccessListener(aVoid -> {
+                LocalRoutineStore.getInstance(context).saveUnlockedAchievements(userId, unlockedIds);
+                announceAchievements(newAchievements, completedAt);
+                if (callback != null) {
+                    callback.onCompletionCommitted(newAchievements);
+                }
+            })
+            .addOnFailureListener(e -> {
+                System.out.println("ACHIEVEMENTS: Error al guardar la actividad completada: " + e.getMessage());
+                forgetUnlocks(newAchievements);
+                if (callback != null) {
+                    callback.onCompletionFailed(e.getMessage());
+                }
+            });
+    }
+    
+    private void runStatsTransaction(String userId, long completedAt) {
+        LocalRoutineStore localStore = LocalRoutineStore.getInstance(context);
+        databaseReference.child("userStats").child(userId).runTransaction(
+            new UserStatsTransaction(userId, completedAt, new UserStatsTransaction.OnStatsCommittedListener() {
+                @Override
+                public void onStatsCommitted(UserStats stats) {
+                    currentUserStats = stats;
+                    localStore.removePendingStatsCompletion(userId, completedAt);
+                    localStore.saveUserStats(userId, stats);
+                    writeAchievements(userId, findNewAchievements(stats));
+                }
+                
+                @Override
+                public void onStatsFailed(String error) {
+                    // Rechazada por Firebase: repetirla en otro arranque daría el mismo error
+                    localStore.removePendingStatsCompletion(userId, completedAt);
+                }
+            }));
+    }
+    
+    // Una vez por proceso y usuario:
+    // - Completadas cuya transacción de día y racha no llegó a confirmarse (la app se cerró
+    //   sin conexión): se aplican ahora con su fecha original. Los totales ya iban en la
+    //   escritura de la completada.
+    // - Logros que las estadísticas ya cumplen pero no están guardados: se guardan ahora.
+    private void reconcileOnLaunch(String userId) {
+        if (!reconciledUsers.add(userId)) return;
+        
+        LocalRoutineStore.getInstance(context).loadPendingStatsCompletions(userId, pending -> {
+            if (pending == null || pending.isEmpty()) return;
+            System.out.println("ACHIEVEMENTS: Aplicando " + pending.size() + " completadas sin racha");
+            for (Long completedAt : pending) {
+                runStatsTransaction(userId, completedAt);
             }
+        });
+        preloadState(userId, () -> {
+            if (currentUserStats != null) {
+                writeAchievements(userId, findNewAchievements(currentUserStats));
+            }
+        });
+    }
+    
+    private void sendActivityCompletion(String userId, Map<String, Object> updates) {
+        if (updates == null || updates.isEmpty()) return;
+        
+        SyncOutbox.getInstance(context).updateChildren(userId, updates)
+            .addOnFailureListener(e -> {
+                System.out.println("ACHIEVEMENTS: Error al guardar la actividad completada: " + e.getMessage());
+            });
+    }
+    
+    // Logros nuevos, para añadir a un updateChildren desde la raíz
+    private void addAchievementUpdates(Map<String, Object> updates, String userId,
+                                       List<Achievement> newAchievements, long unlockedDate) {
+        for (Achievement achievement : newAchievements) {
+            updates.put("userAchievements/" + userId + "/" + achievement.getId(),
+                    SnapshotCodec.writeAchievementState(true, unlockedDate));
+            unlockedIds.add(achievement.getId());
+        }
+    }
+    
+    // Logros que faltan fuera de una completada (transacción confirmada o arranque)
+    private void writeAchievements(String userId, List<Achievement> newAchievements) {
+        if (newAchievements.isEmpty()) return;
+        
+        System.out.println("ACHIEVEMENTS: Guardando " + newAchievements.size() + " logros pendientes");
+        long now = System.currentTimeMillis();
+        Map<String, Object> updates = new HashMap<>();
+        addAchievementUpdates(updates, userId, newAchievements, now);
+        updates.put("userStats/" + userId + "/unlockedAchievements", ServerValue.increment(newAchievements.size()));
+        
+        SyncOutbox.getInstance(context).updateChildren(userId, updates)
+            .addOnSuccessListener(aVoid -> {
+                LocalRoutineStore.getInstance(context).saveUnlockedAchievements(userId, unlockedIds);
+                announceAchievements(newAchievements, now);
+            })
+            .addOnFailureListener(e -> {
+                System.out.println("ACHIEVEMENTS: Error al guardar logros: " + e.getMessage());
+                forgetUnlocks(newAchievements);
+            });
+    }
+    
+    private void announceAchievements(List<Achievement> newAchievements, long unlockedDate) {
+        if (!newAchievements.isEmpty()) {
+            System.out.println("ACHIEVEMENTS: " + newAchievements.size() + " logros nuevos guardados");
+        }
+        for (Achievement achievement : newAchievements) {
+            achievement.setUnlocked(true);
+            achievement.setUnlockedDate(unlockedDate);
             
-            currentUserStats.onActivityCompleted();
-            
-            // Guardar estadísticas actualizadas
-            saveUserStats();
+            // Notificar al listener
+            if (listener != null) {
+                listener.onAchievementUnlocked(achievement);
+            }
             
-            // Verificar nuevos logros
-            checkForNewAchievements();
-        });
+            // Mostrar toast
+            Toast.makeText(context, "🎉 ¡Nuevo logro desbloqueado!\n" + achievement.getName(), 
+                         Toast.LENGTH_LONG).show();
+        }
+    }
+    
+    // Los logros no quedaron guardados: volver a leerlos en la próxima
+    private void forgetUnlocks(List<Achievement> achievements) {
+        for (Achievement achievement : achievements) {
+            unlockedIds.remove(achievement.getId());
+        }
+        stateLoaded = false;
     }
     
     // Cargar estadísticas del usuario
@@ -126,11 +380,9 @@ public class AchievementManager {
             .addListenerForSingleValueEvent(new ValueEventListener() {
                 @Override
                 public void onDataChange(DataSnapshot dataSnapshot) {
-                    if (dataSnapshot.exists()) {
-                        currentUserStats = dataSnapshot.getValue(UserStats.class);
-                    } else {
-                        currentUserStats = new UserStats(userId);
-                    }
+                    UserStats stats = SnapshotCodec.readUserStats(dataSnapshot.getValue());
+                    currentUserStats = stats != null ? stats : new UserStats(userId);
+                    LocalRoutineStore.getInstance(context).saveUserStats(userId, currentUserStats);
                     
                     if (onComplete != null) {
                         onComplete.run();
@@ -140,7 +392,10 @@ public class AchievementManager {
                 @Override
                 public void onCancelled(DatabaseError databaseError) {
                     System.out.println("ACHIEVEMENTS: Error al cargar stats: " + databaseError.getMessage());
-                    currentUserStats = new UserStats(userId);
+                    // Mejor la copia local que unas estadísticas vacías
+                    if (currentUserStats == null) {
+                        currentUserStats = new UserStats(userId);
+                    }
                     if (onComplete != null) {
                         onComplete.run();
                     }
@@ -148,85 +403,37 @@ public class AchievementManager {
             });
     }
     
-    // Guardar estadísticas del usuario
-    private void saveUserStats() {
-        if (currentUserStats != null && firebaseAuth.getCurrentUser() != null) {
-            String userId = firebaseAuth.getCurrentUser().getUid();
-            databaseReference.child("userStats").child(userId)
-                .setValue(currentUserStats)
-                .addOnSuccessListener(aVoid -> {
-                    System.out.println("ACHIEVEMENTS: Estadísticas guardadas");
-                })
-                .addOnFailureListener(e -> {
-                    System.out.println("ACHIEVEMENTS: Error al guardar stats: " + e.getMessage());
-                });
-        }
-    }
-    
-    // Verificar si se desbloquearon nuevos logros
-    private void checkForNewAchievements() {
-        if (currentUserStats == null || firebaseAuth.getCurrentUser() == null) return;
-        
-        String userId = firebaseAuth.getCurrentUser().getUid();
+    // Logros que se desbloquean con estas estadísticas y aún no estaban desbloqueados
+    private List<Achievement> findNewAchievements(UserStats stats) {
+        List<Achievement> newAchievements = new ArrayList<>();
         
         for (Achievement achievement : allAchievements) {
-            if (!achievement.isUnlocked()) {
-                boolean shouldUnlock = false;
-                
-                switch (achievement.getCategory()) {
-                    case "daily":
-                        shouldUnlock = currentUserStats.getActivitiesCompletedToday() >= achievement.getRequiredValue();
-                        break;
-                    case "streak":
-                        shouldUnlock = currentUserStats.getCurrentStreak() >= achievement.getRequiredValue();
-                        break;
-                    case "special":
-                        if (achievement.getId().equals("explorer")) {
-                            shouldUnlock = currentUserStats.getTotalActivitiesCompleted() >= 1;
-                        } else if (achievement.getId().equals("perfectionist")) {
-                            shouldUnlock = currentUserStats.getTotalActivitiesCompleted() >= 50;
-                        }
-                        break;
-                }
-                
-                if (shouldUnlock) {
-                    unlockAchievement(userId, achievement);
-                }
+            if (unlockedIds.contains(achievement.getId())) continue;
+            
+            boolean shouldUnlock = false;
+            
+            switch (achievement.getCategory()) {
+                case "daily":
+                    shouldUnlock = stats.getActivitiesCompletedToday() >= achievement.getRequiredValue();
+                    break;
+                case "streak":
+                    shouldUnlock = stats.getCurrentStreak() >= achievement.getRequiredValue();
+                    break;
+                case "special":
+                    if (achievement.getId().equals("explorer")) {
+                        shouldUnlock = stats.getTotalActivitiesCompleted() >= 1;
+                    } else if (achievement.getId().equals("perfectionist")) {
+                        shouldUnlock = stats.getTotalActivitiesCompleted() >= 50;
+                    }
+                    break;
+            }
+            
+            if (shouldUnlock) {
+                newAchievements.add(achievement);
             }
         }
-    }
-    
-    // Desbloquear un logro
-    private void unlockAchievement(String userId, Achievement achievement) {
-        achievement.setUnlocked(true);
-        achievement.setUnlockedDate(System.currentTimeMillis());
-        
-        // Guardar en Firebase
-        Map<String, Object> achievementData = new HashMap<>();
-        achievementData.put("unlocked", true);
-        achievementData.put("unlockedDate", achievement.getUnlockedDate());
         
-        databaseReference.child("userAchievements").child(userId).child(achievement.getId())
-            .updateChildren(achievementData)
-            .addOnSuccessListener(aVoid -> {
-                System.out.println("ACHIEVEMENTS: Logro desbloqueado: " + achievement.getName());
-                
-                // Actualizar contador de logros
-                currentUserStats.setUnlockedAchievements(currentUserStats.getUnlockedAchievements() + 1);
-                saveUserStats();
-                
-                // Notificar al listener
-                if (listener != null) {
-                    listener.onAchievementUnlocked(achievement);
-                }
-                
-                // Mostrar toast
-                Toast.makeText(context, "🎉 ¡Nuevo logro desbloqueado!\n" + achievement.getName(), 
-                             Toast.LENGTH_LONG).show();
-            })
-            .addOnFailureListener(e -> {
-                System.out.println("ACHIEVEMENTS: Error al desbloquear logro: " + e.getMessage());
-            });
+        return newAchievements;
     }
     
     // Obtener todos los logros del usuario
@@ -11,6 +11,8 @@ public class Activity {
     private String pictogramKeyword;
     private boolean completed;
     private long createdAt;
+    // Última edición (0 si nunca se ha editado)
+    private long updatedAt;
     private String userId;
     
     // Nuevos campos para secuencias
@@ -92,6 +94,14 @@ public class Activity {
         this.createdAt = createdAt;
     }
 
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
     public String getUserId() {
         return userId;
     }
@@ -101,7 +111,11 @@ public class Activity {
     }
 
     public String getPictogramUrl() {
-        return "https://api.arasaac.org/api/pictograms/" + pictogramId + "?download=false";
+        return getPictogramUrl(PictogramSize.FULL);
+    }
+
+    public String getPictogramUrl(PictogramSize size) {
+        return size.urlFor(pictogramId);
     }
     
     // Métodos para secuencias
@@ -10,16 +10,35 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
+import java.util.Objects;
 
-import java.util.List;
+// Las listas se entregan con submitList: DiffUtil calcula en segundo plano qué filas cambian
+public class ActivityAdapter extends ListAdapter<Activity, ActivityAdapter.ActivityViewHolder> {
 
-public class ActivityAdapter extends RecyclerView.Adapter<ActivityAdapter.ActivityViewHolder> {
+    private static final int PRELOAD_AHEAD = 6;
+
+    private static final DiffUtil.ItemCallback<Activity> DIFF_CALLBACK = new DiffUtil.ItemCallback<Activity>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Activity oldItem, @NonNull Activity newItem) {
+            return Objects.equals(oldItem.getId(), newItem.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Activity oldItem, @NonNull Activity newItem) {
+            // Solo los campos que se muestran en la fila
+            return Objects.equals(oldItem.getName(), newItem.getName())
+                    && Objects.equals(oldItem.getTime(), newItem.getTime())
+                    && oldItem.getPictogramId() == newItem.getPictogramId()
+                    && oldItem.isCompleted() == newItem.isCompleted();
+        }
+    };
 
-    private List<Activity> activities;
     private OnActivityClickListener listener;
+    private PictogramPreloader preloader;
 
     public interface OnActivityClickListener {
         void onActivityClick(Activity activity);
@@ -27,9 +46,23 @@ public class ActivityAdapter extends RecyclerView.Adapter<ActivityAdapter.Activi
         void onActivitySpeak(Activity activity);
     }
 
-    public ActivityAdapter(List<Activity> activities, OnActivityClickListener listener) {
-        this.activities = activities;
+    public ActivityAdapter(OnActivityClickListener listener) {
+        super(DIFF_CALLBACK);
         this.listener = listener;
+        setHasStableIds(true);
+    }
+
+    // ID estable sacado de la clave de Firebase, sin guardar nada por actividad: FNV-1a de
+    // 64 bits, con muchas menos colisiones que el hashCode de 32 de String
+    @Override
+    public long getItemId(int position) {
+        String id = Objects.toString(getItem(position).getId(), "");
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
     }
 
     @NonNull
@@ -42,18 +75,18 @@ public class ActivityAdapter extends RecyclerView.Adapter<ActivityAdapter.Activi
 
     @Override
     public void onBindViewHolder(@NonNull ActivityViewHolder holder, int position) {
-        Activity activity = activities.get(position);
+        Activity activity = getItem(position);
         
         // Configurar datos básicos
         holder.activityNameText.setText(activity.getName());
         holder.activityTimeText.setText(activity.getTime());
         
         // Cargar pictograma
-        Glide.with(holder.itemView.getContext())
-                .load(activity.getPictogramUrl())
-                .placeholder(R.drawable.ic_image_placeholder)
-                .error(R.drawable.ic_image_error)
-                .into(holder.pictogramImageView);
+        if (preloader != null) {
+            preloader.trackView(holder.pictogramImageView);
+        }
+        PictogramImageLoader.load(holder.pictogramImageView, activity.getPictogramId(),
+                PictogramSize.THUMBNAIL, R.drawable.ic_image_placeholder, R.drawable.ic_image_error);
         
         // Configurar estado completado
         if (activity.isCompleted()) {
@@ -97,8 +130,21 @@ public class ActivityAdapter extends RecyclerView.Adapter<ActivityAdapter.Activi
     }
 
     @Override
-    public int getItemCount() {
-        return activities.size();
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        // Precargar las miniaturas de los próximos elementos mientras se hace scroll
+        // Mismo scaleType que la ImageView del layout del elemento
+        preloader = new PictogramPreloader(recyclerView, PictogramSize.THUMBNAIL, ImageView.ScaleType.CENTER_CROP, PRELOAD_AHEAD,
+                position -> position < getItemCount() ? getItem(position).getPictogramId() : 0);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        if (preloader != null) {
+            preloader.detach();
+            preloader = null;
+        }
+        super.onDetachedFromRecyclerView(recyclerView);
     }
 
     public static class ActivityViewHolder extends RecyclerView.ViewHolder {
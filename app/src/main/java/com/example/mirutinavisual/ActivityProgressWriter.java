@@ -0,0 +1,122 @@
+package com.example.mirutinavisual;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Guarda el progreso de una secuencia campo a campo (pasos completados y currentStepIndex)
+// en lugar de subir la actividad entera. Los toques seguidos se agrupan en una sola escritura.
+// Todo espera a saber dónde está la actividad (ActivityRepository.resolveHeaderPaths).
+// Usar desde el hilo principal.
+public class ActivityProgressWriter {
+
+    public static final long DEFAULT_FLUSH_DELAY_MS = 1500;
+
+    // Escrituras desde la raíz (los pasos y la cabecera están en nodos distintos) que
+    // se guardan en disco hasta que Firebase las confirma
+    private final SyncOutbox outbox;
+    private final String userId;
+    private final String activityId;
+    private final long flushDelayMs;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Campos de la cabecera por nombre y pasos completados (storageIndex), hasta resolver las rutas
+    private final Map<String, Object> pendingHeaderFields = new HashMap<>();
+    private final Set<Integer> pendingCompletedSteps = new LinkedHashSet<>();
+    private boolean headerResolved;
+    // Vacía si la actividad no existe: lo pendiente se descarta
+    private List<String> headerPaths;
+    private final Runnable flushRunnable = this::flush;
+    private boolean flushScheduled;
+
+    public ActivityProgressWriter(SyncOutbox outbox, String userId, String activityId) {
+        this(outbox, userId, activityId, DEFAULT_FLUSH_DELAY_MS);
+    }
+
+    public ActivityProgressWriter(SyncOutbox outbox, String userId, String activityId, long flushDelayMs) {
+        this.outbox = outbox;
+        this.userId = userId;
+        this.activityId = activityId;
+        this.flushDelayMs = flushDelayMs;
+
+        ActivityRepository.resolveHeaderPaths(userId, activityId, paths -> {
+            headerPaths = paths;
+            headerResolved = true;
+            // Lo que quedó fuera de un flush o drain anterior: enviarlo ya
+            if ((!pendingHeaderFields.isEmpty() || !pendingCompletedSteps.isEmpty()) && !flushScheduled) {
+                flush();
+            }
+        });
+    }
+
+    // Solo pasos guardados en Firebase: los de la secuencia automática no existen allí
+    public void markStepCompleted(SequenceStep step) {
+        if (step.getStorageIndex() < 0) return;
+        pendingCompletedSteps.add(step.getStorageIndex());
+        scheduleFlush();
+    }
+
+    public void setCurrentStepIndex(int currentStepIndex) {
+        pendingHeaderFields.put("currentStepIndex", currentStepIndex);
+        scheduleFlush();
+    }
+
+    // Secuencia terminada: va con el resto del progreso aunque no haya AchievementManager
+    public void markActivityCompleted() {
+        pendingHeaderFields.put("completed", true);
+        scheduleFlush();
+    }
+
+    // Entregar lo pendiente a otra escritura (la finalización lo incluye en su updateChildren).
+    // Sin rutas resueltas todo se queda y sale en un flush posterior
+    public Map<String, Object> drainPendingUpdates() {
+        mainHandler.removeCallbacks(flushRunnable);
+        flushScheduled = false;
+        return takeResolvedUpdates();
+    }
+
+    // Enviar ya lo pendiente (al terminar la secuencia o al salir de la pantalla)
+    public void flush() {
+        mainHandler.removeCallbacks(flushRunnable);
+        flushScheduled = false;
+        Map<String, Object> updates = takeResolvedUpdates();
+        if (updates.isEmpty()) return;
+
+        outbox.updateChildren(userId, updates)
+                .addOnSuccessListener(aVoid -> {
+                    System.out.println("PROGRESS_WRITER: Guardados " + updates.size() + " campos: " + updates.keySet());
+                })
+                .addOnFailureListener(e -> {
+                    System.out.println("PROGRESS_WRITER: Error al guardar progreso: " + e.getMessage());
+                });
+    }
+
+    private Map<String, Object> takeResolvedUpdates() {
+        Map<String, Object> updates = new HashMap<>();
+        if (!headerResolved) return updates;
+
+        for (String headerPath : headerPaths) {
+            for (Map.Entry<String, Object> field : pendingHeaderFields.entrySet()) {
+                updates.put(headerPath + "/" + field.getKey(), field.getValue());
+            }
+            for (int storageIndex : pendingCompletedSteps) {
+                updates.put(ActivityStepsStore.stepCompletedPath(userId, activityId, headerPath, storageIndex), true);
+            }
+        }
+        pendingHeaderFields.clear();
+        pendingCompletedSteps.clear();
+        return updates;
+    }
+
+    private void scheduleFlush() {
+        // Plazo fijo desde el primer cambio: tocar sin parar no retrasa la escritura
+        if (!flushScheduled) {
+            flushScheduled = true;
+            mainHandler.postDelayed(flushRunnable, flushDelayMs);
+        }
+    }
+}
@@ -0,0 +1,549 @@
+package com.example.mirutinavisual;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Cabeceras de las actividades del usuario compartidas por todas las pantallas: un solo
+// listener de Firebase por usuario (los pasos están en ActivityStepsStore). Los eventos por hijo actualizan un modelo indexado por clave,
+// así un cambio solo vuelve a parsear la actividad afectada.
+// Las actividades del formato anterior (nodo global activities) se mueven una sola vez por
+// usuario; la marca userMeta/<uid>/activitiesMigrated evita volver a consultar ese nodo.
+// Firebase entrega los eventos en el hilo principal, pero el parseo, el modelo y las vistas
+// (orden, filtros) van en un hilo propio: a la pantalla solo llegan listas inmutables.
+// Los métodos públicos se llaman desde el hilo principal.
+public class ActivityRepository {
+
+    // Al volver atrás entre pantallas no se suelta el listener para no descargar todo otra vez
+    private static final long DETACH_DELAY_MS = 30000;
+    // Parseo y modelo de una ráfaga de eventos / cálculo de las vistas de una entrega
+    private static final String METRIC_DECODE = "activities_decode";
+    private static final String METRIC_VIEWS = "activities_views";
+
+    // Por hora ("HH:mm" ordena como texto); las que no tienen hora al final
+    public static final ActivitiesView SORTED_BY_TIME = activities -> {
+        List<Activity> sorted = new ArrayList<>(activities);
+        sorted.sort(Comparator.comparing(Activity::getTime, Comparator.nullsLast(Comparator.naturalOrder())));
+        return sorted;
+    };
+
+    // Sin transformar: en el orden de Firebase
+    public static final ActivitiesView FIREBASE_ORDER = activities -> activities;
+
+    private static volatile ActivityRepository instance;
+
+    private final Context appContext;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Un solo hilo: los eventos se aplican en el orden en que llegaron
+    private final ExecutorService decodeExecutor = Executors.newSingleThreadExecutor();
+    private final Map<String, UserSubscription> subscriptions = new HashMap<>();
+    // Usuarios ya revisados en este proceso
+    private final Set<String> migratedUsers = new HashSet<>();
+
+    public interface ActivitiesObserver {
+        // La lista no se puede modificar y las actividades no deben cambiarse desde la pantalla
+        void onActivitiesChanged(List<Activity> activities);
+        void onError(String error);
+    }
+
+    // Orden o filtro que pide una pantalla. Se calcula fuera del hilo principal, una vez por
+    // cambio y por vista: usar la misma instancia (p. ej. SORTED_BY_TIME) para compartirla
+    public interface ActivitiesView {
+        List<Activity> apply(List<Activity> activities);
+    }
+
+    private static class Registration {
+        final ActivitiesObserver observer;
+        final ActivitiesView view;
+
+        Registration(ActivitiesObserver observer, ActivitiesView view) {
+            this.observer = observer;
+            this.view = view;
+        }
+    }
+
+    private static class UserSubscription {
+        final String userId;
+        final Query query;
+        // Hilo principal
+        final List<Registration> registrations = new ArrayList<>();
+        ChildEventListener listener;
+        List<Activity> snapshot;
+        Map<ActivitiesView, List<Activity>> viewSnapshots = new HashMap<>();
+        // snapshot viene de la copia local y Firebase aún no respondió
+        boolean fromLocalMirror;
+        Runnable pendingDetach;
+        // Hilo de decodificación. Modelo por clave y orden de Firebase (previousChildName)
+        final Map<String, Activity> model = new HashMap<>();
+        final List<String> order = new ArrayList<>();
+        boolean loaded;
+        boolean publishQueued;
+        // Tiempo de parseo y modelo acumulado desde la última publicación
+        long decodeNs;
+        // Vistas registradas: las lee el hilo de decodificación
+        final Set<ActivitiesView> views = new CopyOnWriteArraySet<>();
+        volatile boolean detached;
+
+        UserSubscription(String userId, Query query) {
+            this.userId = userId;
+            this.query = query;
+        }
+    }
+
+    public static ActivityRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ActivityRepository.class) {
+                if (instance == null) {
+                    instance = new ActivityRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ActivityRepository(Context appContext) {
+        this.appContext = appContext;
+    }
+
+    // El observador se quita solo cuando la pantalla se destruye
+    public void observe(LifecycleOwner owner, String userId, ActivitiesObserver observer) {
+        observe(owner, userId, FIREBASE_ORDER, observer);
+    }
+
+    public void observe(LifecycleOwner owner, String userId, ActivitiesView view, ActivitiesObserver observer) {
+        Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) return;
+
+        addObserver(userId, view, observer);
+        lifecycle.addObserver(new DefaultLifecycleObserver() {
+            @Override
+            public void onDestroy(@NonNull LifecycleOwner source) {
+                source.getLifecycle().removeObserver(this);
+                removeObserver(userId, observer);
+            }
+        });
+    }
+
+    public void addObserver(String userId, ActivitiesObserver observer) {
+        addObserver(userId, FIREBASE_ORDER, observer);
+    }
+
+    public void addObserver(String userId, ActivitiesView view, ActivitiesObserver observer) {
+        UserSubscription subscription = subscriptions.get(userId);
+        if (subscription == null) {
+            // Nodo propio del usuario: sin filtrar entre las actividades de todas las familias
+            subscription = new UserSubscription(userId, FirebaseDatabase.getInstance().getReference()
+                    .child(DatabasePaths.activities(userId)));
+            subscriptions.put(userId, subscription);
+            migrateLegacyActivities(userId);
+            loadLocalMirror(userId, subscription);
+        }
+
+        if (subscription.pendingDetach != null) {
+            mainHandler.removeCallbacks(subscription.pendingDetach);
+            subscription.pendingDetach = null;
+        }
+
+        subscription.registrations.add(new Registration(observer, view));
+        boolean newView = subscription.views.add(view);
+        if (subscription.listener == null) {
+            attach(userId, subscription);
+        } else if (subscription.snapshot != null) {
+            List<Activity> viewSnapshot = subscription.viewSnapshots.get(view);
+            if (viewSnapshot != null) {
+                // Ya hay datos: la pantalla nueva se pinta sin esperar a Firebase
+                observer.onActivitiesChanged(viewSnapshot);
+            } else if (newView) {
+                // Vista que nadie había pedido: se calcula en segundo plano con lo que ya hay
+                List<Activity> base = subscription.snapshot;
+                boolean fromLocalMirror = subscription.fromLocalMirror;
+                UserSubscription target = subscription;
+                decodeExecutor.execute(() -> deliver(target, base, fromLocalMirror, true));
+            }
+        }
+    }
+
+    public void removeObserver(String userId, ActivitiesObserver observer) {
+        UserSubscription subscription = subscriptions.get(userId);
+        if (subscription == null) return;
+
+        subscription.registrations.removeIf(registration -> registration.observer == observer);
+        // Vistas que ya no usa ninguna pantalla
+        subscription.views.removeIf(view -> {
+            for (Registration registration : subscription.registrations) {
+                if (registration.view == view) return false;
+            }
+            return true;
+        });
+        if (subscription.registrations.isEmpty() && subscription.pendingDetach == null) {
+            subscription.pendingDetach = () -> detach(userId);
+            mainHandler.postDelayed(subscription.pendingDetach, DETACH_DELAY_MS);
+        }
+    }
+
+    // Último estado conocido (orden de Firebase) o null si aún no llegó nada
+    public List<Activity> getSnapshot(String userId) {
+        UserSubscription subscription = subscriptions.get(userId);
+        return subscription != null ? subscription.snapshot : null;
+    }
+
+    // true mientras lo entregado sea la copia local (sin conexión o Firebase aún cargando)
+    public boolean isFromLocalMirror(String userId) {
+        UserSubscription subscription = subscriptions.get(userId);
+        return subscription != null && subscription.fromLocalMirror;
+    }
+
+    // Pintar al instante con la última copia guardada; Firebase la sustituye al cargar
+    private void loadLocalMirror(String userId, UserSubscription subscription) {
+        LocalRoutineStore.getInstance(appContext).loadActivities(userId, activities -> {
+            if (activities == null || subscriptions.get(userId) != subscription) return;
+
+            System.out.println("ACTIVITY_REPO: " + activities.size() + " actividades desde la copia local");
+            decodeExecutor.execute(() -> {
+                // Firebase ya cargó mientras se leía el disco
+                if (subscription.loaded) return;
+                deliver(subscription, Collections.unmodifiableList(activities), true, false);
+            });
+        });
+    }
+
+    private void attach(String userId, UserSubscription subscription) {
+        // Los DataSnapshot son inmutables: se pueden leer desde otro hilo
+        subscription.listener = childListener(subscription);
+        subscription.query.addChildEventListener(subscription.listener);
+
+        // Sin hijos no llega ningún onChildAdded: este evento marca el fin de la carga inicial.
+        // Comparte la sincronización del listener anterior, no vuelve a descargar los datos.
+        subscription.query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                if (subscriptions.get(userId) != subscription) return;
+                // Detrás de los onChildAdded de la carga inicial en la cola del hilo
+                decodeExecutor.execute(() -> {
+                    subscription.loaded = true;
+                    schedulePublish(subscription);
+                });
+            }
+
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                // El error ya se entrega por el ChildEventListener
+            }
+        });
+        System.out.println("ACTIVITY_REPO: Listener conectado para " + userId);
+    }
+
+    // Aplica los eventos por hijo al modelo de la suscripción
+    private ChildEventListener childListener(UserSubscription subscription) {
+        Map<String, Activity> model = subscription.model;
+        List<String> order = subscription.order;
+        return new ChildEventListener() {
+            @Override
+            public void onChildAdded(DataSnapshot activitySnapshot, String previousChildName) {
+                decodeExecutor.execute(timed(subscription, () -> {
+                    Activity activity = parseActivity(activitySnapshot);
+                    if (activity == null) return;
+
+                    model.put(activity.getId(), activity);
+                    placeAfter(order, activity.getId(), previousChildName);
+                    schedulePublish(subscription);
+                }));
+            }
+
+            @Override
+            public void onChildChanged(DataSnapshot activitySnapshot, String previousChildName) {
+                decodeExecutor.execute(timed(subscription, () -> {
+                    Activity activity = parseActivity(activitySnapshot);
+                    if (activity == null) return;
+
+                    if (model.put(activity.getId(), activity) == null) {
+                        placeAfter(order, activity.getId(), previousChildName);
+                    }
+                    schedulePublish(subscription);
+                }));
+            }
+
+            @Override
+            public void onChildRemoved(DataSnapshot activitySnapshot) {
+                String key = activitySnapshot.getKey();
+                decodeExecutor.execute(timed(subscription, () -> {
+                    if (model.remove(key) != null) {
+                        order.remove(key);
+                        schedulePublish(subscription);
+                    }
+                }));
+            }
+
+            @Override
+            public void onChildMoved(DataSnapshot activitySnapshot, String previousChildName) {
+                String key = activitySnapshot.getKey();
+                decodeExecutor.execute(timed(subscription, () -> {
+                    if (model.containsKey(key)) {
+                        placeAfter(order, key, previousChildName);
+                        schedulePublish(subscription);
+                    }
+                }));
+            }
+
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                System.out.println("ACTIVITY_REPO: Error al escuchar actividades: " + databaseError.getMessage());
+                for (Registration registration : new ArrayList<>(subscription.registrations)) {
+                    registration.observer.onError(databaseError.getMessage());
+                }
+            }
+        };
+    }
+
+    // Tarea del hilo de decodificación que suma su duración a la ráfaga en curso
+    private static Runnable timed(UserSubscription subscription, Runnable work) {
+        return () -> {
+            long start = System.nanoTime();
+            work.run();
+            subscription.decodeNs += System.nanoTime() - start;
+        };
+    }
+
+    // Hilo de decodificación. Agrupa los eventos de una misma ráfaga (p. ej. la carga inicial)
+    // en una sola entrega: la publicación va detrás de los eventos ya encolados
+    private void schedulePublish(UserSubscription subscription) {
+        if (!subscription.loaded || subscription.publishQueued) return;
+
+        subscription.publishQueued = true;
+        decodeExecutor.execute(() -> {
+            subscription.publishQueued = false;
+            publish(subscription);
+        });
+    }
+
+    // Hilo de decodificación
+    private void publish(UserSubscription subscription) {
+        if (subscription.detached) return;
+
+        long start = System.nanoTime();
+        List<Activity> activities = new ArrayList<>(subscription.order.size());
+        for (String key : subscription.order) {
+            activities.add(subscription.model.get(key));
+        }
+        PerformanceMetrics.record(METRIC_DECODE,
+                (subscription.decodeNs + System.nanoTime() - start) / 1_000_000);
+        subscription.decodeNs = 0;
+        LocalRoutineStore.getInstance(appContext).saveActivities(subscription.userId, activities);
+        // Guardar los pictogramas y pasos de la rutina para el modo niño sin conexión
+        PictogramOfflineStore.getInstance(appContext).pinActivities(activities);
+        mainHandler.post(() -> ActivityStepsStore.getInstance(appContext).syncSteps(subscription.userId, activities));
+
+        deliver(subscription, Collections.unmodifiableList(activities), false, false);
+    }
+
+    // Hilo de decodificación: calcula las vistas y entrega el resultado en el hilo principal.
+    // viewsOnly: mismos datos que ya tiene la pantalla, solo para vistas recién pedidas
+    private void deliver(UserSubscription subscription, List<Activity> activities,
+                         boolean fromLocalMirror, boolean viewsOnly) {
+        long start = SystemClock.elapsedRealtime();
+        Map<ActivitiesView, List<Activity>> viewSnapshots = new HashMap<>();
+        for (ActivitiesView view : subscription.views) {
+            viewSnapshots.put(view, view == FIREBASE_ORDER
+                    ? activities : Collections.unmodifiableList(view.apply(activities)));
+        }
+        PerformanceMetrics.record(METRIC_VIEWS, SystemClock.elapsedRealtime() - start);
+
+        mainHandler.post(() -> {
+            if (subscriptions.get(subscription.userId) != subscription) return;
+
+            if (viewsOnly) {
+                // Mientras tanto llegaron datos nuevos, que ya traen estas vistas
+                if (subscription.snapshot != activities) return;
+                for (Registration registration : new ArrayList<>(subscription.registrations)) {
+                    if (subscription.viewSnapshots.containsKey(registration.view)) continue;
+                    List<Activity> viewSnapshot = viewSnapshots.get(registration.view);
+                    if (viewSnapshot != null) {
+                        registration.observer.onActivitiesChanged(viewSnapshot);
+                    }
+                }
+                subscription.viewSnapshots.putAll(viewSnapshots);
+                return;
+            }
+            // La copia local llegó tarde: Firebase ya publicó
+            if (fromLocalMirror && subscription.snapshot != null && !subscription.fromLocalMirror) return;
+
+            subscription.snapshot = activities;
+            subscription.viewSnapshots = viewSnapshots;
+            subscription.fromLocalMirror = fromLocalMirror;
+
+            System.out.println("ACTIVITY_REPO: " + activities.size() + " actividades para "
+                    + subscription.registrations.size() + " pantallas");
+            boolean missingViews = false;
+            for (Registration registration : new ArrayList<>(subscription.registrations)) {
+                List<Activity> viewSnapshot = viewSnapshots.get(registration.view);
+                if (viewSnapshot != null) {
+                    registration.observer.onActivitiesChanged(viewSnapshot);
+                } else {
+                    missingViews = true;
+                }
+            }
+            // Pantalla registrada mientras se calculaban las vistas
+            if (missingViews) {
+                decodeExecutor.execute(() -> deliver(subscription, activities, fromLocalMirror, true));
+            }
+        });
+    }
+
+    // Hilo de decodificación
+    private static void placeAfter(List<String> order, String key, String previousKey) {
+        order.remove(key);
+        int index = previousKey != null ? order.indexOf(previousKey) + 1 : 0;
+        order.add(index, key);
+    }
+
+    private void detach(String userId) {
+        UserSubscription subscription = subscriptions.get(userId);
+        if (subscription == null || !subscription.registrations.isEmpty()) return;
+
+        if (subscription.listener != null) {
+            subscription.query.removeEventListener(subscription.listener);
+        }
+        subscription.detached = true;
+        subscriptions.remove(userId);
+        System.out.println("ACTIVITY_REPO: Listener desconectado para " + userId);
+    }
+
+    public interface HeaderPathsCallback {
+        // Cabecera existente (nueva o, sin migrar, la antigua); vacía si no está en ningún sitio
+        void onResolved(List<String> headerPaths);
+    }
+
+    // Dónde escribir campos sueltos de la cabecera (completed, currentStepIndex). Una actividad
+    // que la migración aún no ha movido sigue en el nodo antiguo: escribir en userActivities
+    // crearía una cabecera sin nombre. Lista vacía si no está en ningún sitio.
+    // userActivities/<uid> tiene keepSynced, así que sin conexión se responde desde la caché
+    public static void resolveHeaderPaths(String userId, String activityId, HeaderPathsCallback callback) {
+        DatabaseReference root = FirebaseDatabase.getInstance().getReference();
+        String headerPath = DatabasePaths.activity(userId, activityId);
+        root.child(headerPath).get().addOnCompleteListener(task -> {
+            if (task.isSuccessful() && task.getResult().exists()) {
+                callback.onResolved(Collections.singletonList(headerPath));
+                return;
+            }
+            String legacyPath = DatabasePaths.legacyActivity(activityId);
+            root.child(legacyPath).get().addOnCompleteListener(legacyTask -> {
+                boolean legacy = legacyTask.isSuccessful() && legacyTask.getResult().exists()
+                        && userId.equals(legacyTask.getResult().child("userId").getValue());
+                if (!legacy) {
+                    System.out.println("ACTIVITY_REPO: Sin cabecera para " + activityId + ", no se escriben sus campos");
+                }
+                callback.onResolved(legacy ? Collections.singletonList(legacyPath) : Collections.emptyList());
+            });
+        });
+    }
+
+    // Migración única del formato anterior: cada actividad del nodo global activities pasa a
+    // userActivities/<uid> y sus pasos a userActivitySteps/<uid>, y se borra de allí. Todo va
+    // en una sola escritura junto con la marca, así la consulta global no se repite nunca.
+    // database.rules.json solo deja hacer esa consulta mientras no exista la marca
+    private void migrateLegacyActivities(String userId) {
+        if (!migratedUsers.add(userId)) return;
+
+        DatabaseReference root = FirebaseDatabase.getInstance().getReference();
+        root.child(DatabasePaths.activitiesMigrated(userId)).get()
+                .addOnSuccessListener(marker -> {
+                    if (Boolean.TRUE.equals(marker.getValue())) return;
+                    root.child(DatabasePaths.LEGACY_ACTIVITIES).orderByChild("userId").equalTo(userId).get()
+                            .addOnSuccessListener(legacySnapshot -> moveLegacyActivities(root, userId, legacySnapshot))
+                            .addOnFailureListener(e -> migrationFailed(userId, e));
+                })
+                .addOnFailureListener(e -> migrationFailed(userId, e));
+    }
+
+    private void moveLegacyActivities(DatabaseReference root, String userId, DataSnapshot legacySnapshot) {
+        // Pasos en el nodo separado activitySteps/<id> de las versiones intermedias
+        List<DataSnapshot> legacyActivities = new ArrayList<>();
+        List<Task<DataSnapshot>> splitSteps = new ArrayList<>();
+        for (DataSnapshot legacyActivity : legacySnapshot.getChildren()) {
+            legacyActivities.add(legacyActivity);
+            splitSteps.add(legacyActivity.hasChild("steps") ? Tasks.forResult(null)
+                    : root.child(DatabasePaths.legacyActivitySteps(legacyActivity.getKey())).get());
+        }
+
+        Tasks.whenAllComplete(splitSteps).addOnCompleteListener(done -> {
+            Map<String, Object> updates = new HashMap<>();
+            for (int i = 0; i < legacyActivities.size(); i++) {
+                Task<DataSnapshot> stepsTask = splitSteps.get(i);
+                DataSnapshot split = stepsTask.isSuccessful() ? stepsTask.getResult() : null;
+                addLegacyMove(updates, userId, legacyActivities.get(i), split);
+            }
+            updates.put(DatabasePaths.activitiesMigrated(userId), true);
+
+            root.updateChildren(updates)
+                    .addOnSuccessListener(aVoid -> {
+                        System.out.println("ACTIVITY_REPO: Migradas " + legacyActivities.size()
+                                + " actividades antiguas de " + userId);
+                    })
+                    .addOnFailureListener(e -> migrationFailed(userId, e));
+        });
+    }
+
+    private static void addLegacyMove(Map<String, Object> updates, String userId, DataSnapshot legacyActivity,
+                                      DataSnapshot splitSteps) {
+        String activityId = legacyActivity.getKey();
+        Object value = legacyActivity.getValue();
+        if (activityId == null || !(value instanceof Map)) return;
+
+        Object steps = splitSteps != null && splitSteps.exists()
+                ? splitSteps.getValue() : legacyActivity.child("steps").getValue();
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> header = new HashMap<>((Map<String, Object>) value);
+        header.remove("steps");
+        header.put("id", activityId);
+        header.put("totalSteps", SnapshotCodec.readSteps(steps).size());
+
+        updates.put(DatabasePaths.activity(userId, activityId), header);
+        updates.put(DatabasePaths.activitySteps(userId, activityId), steps);
+        updates.put(DatabasePaths.legacyActivity(activityId), null);
+        updates.put(DatabasePaths.legacyActivitySteps(activityId), null);
+    }
+
+    private void migrationFailed(String userId, Exception e) {
+        // Se reintenta la próxima vez que una pantalla observe a este usuario
+        migratedUsers.remove(userId);
+        System.out.println("ACTIVITY_REPO: No se pudieron migrar las actividades antiguas: " + e.getMessage());
+    }
+
+    // Solo la cabecera: los pasos están en userActivitySteps y se cargan al abrir la secuencia
+    private static Activity parseActivity(DataSnapshot activitySnapshot) {
+        Activity activity = SnapshotCodec.readActivity(activitySnapshot.getKey(), activitySnapshot.getValue());
+        if (activity == null) {
+            System.out.println("ACTIVITY_REPO: Actividad con formato desconocido: " + activitySnapshot.getKey());
+        }
+        return activity;
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.mirutinavisual;
+
+import android.content.Context;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Pasos de las secuencias, guardados aparte en userActivitySteps/<uid>/<id>.
+// La cabecera (userActivities/<uid>/<id>: nombre, hora, isSequence, totalSteps) no los lleva
+// y las listas ya no los descargan: solo se leen al abrir o editar una secuencia.
+// Lectura doble: mientras la migración (ActivityRepository) no haya movido la actividad se
+// buscan en el formato anterior, dentro de activities/<id>/steps o en activitySteps/<id>.
+// Leer no mueve ni borra nada; guardar la actividad sí la pasa al formato nuevo.
+// Usar desde el hilo principal.
+public class ActivityStepsStore {
+
+    private static volatile ActivityStepsStore instance;
+
+    private final Context appContext;
+    private final DatabaseReference databaseReference;
+    // Versión (createdAt/updatedAt de la cabecera) de los pasos ya sincronizados en este proceso
+    private final Map<String, Long> syncedVersions = new HashMap<>();
+
+    public interface StepsCallback {
+        // Lista vacía si la actividad no tiene pasos personalizados
+        void onStepsLoaded(List<SequenceStep> steps);
+        void onStepsError(String error);
+    }
+
+    public static ActivityStepsStore getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ActivityStepsStore.class) {
+                if (instance == null) {
+                    instance = new ActivityStepsStore(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ActivityStepsStore(Context appContext) {
+        this.appContext = appContext;
+        this.databaseReference = FirebaseDatabase.getInstance().getReference();
+    }
+
+    public void loadSteps(String userId, String activityId, StepsCallback callback) {
+        databaseReference.child(DatabasePaths.activitySteps(userId, activityId)).get()
+                .addOnSuccessListener(stepsSnapshot -> {
+                    if (stepsSnapshot.exists()) {
+                        saveAndDeliver(userId, activityId, SnapshotCodec.readSteps(stepsSnapshot.getValue()), callback);
+                    } else {
+                        loadLegacySteps(userId, activityId, callback);
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    // Sin conexión: la última copia local de la secuencia
+                    System.out.println("STEPS_STORE: Error al cargar pasos de " + activityId + ": " + e.getMessage());
+                    LocalRoutineStore.getInstance(appContext).loadSteps(userId, activityId, localSteps -> {
+                        if (localSteps != null) {
+                            deliver(localSteps, callback);
+                        } else {
+                            callback.onStepsError(e.getMessage());
+                        }
+                    });
+                });
+    }
+
+    // Copia local y pictogramas de los pasos de cada secuencia nueva o editada, para el modo
+    // niño sin conexión aunque nunca se haya abierto. Se llama con cada lista publicada
+    public void syncSteps(String userId, List<Activity> activities) {
+        for (Activity activity : activities) {
+            if (!activity.isSequence()) continue;
+
+            String key = userId + "/" + activity.getId();
+            long version = Math.max(activity.getCreatedAt(), activity.getUpdatedAt());
+            Long synced = syncedVersions.get(key);
+            if (synced != null && synced == version) continue;
+
+            syncedVersions.put(key, version);
+            loadSteps(userId, activity.getId(), new StepsCallback() {
+                @Override
+                public void onStepsLoaded(List<SequenceStep> steps) {
+                    // loadSteps ya los ha guardado y fijado
+                }
+
+                @Override
+                public void onStepsError(String error) {
+                    // Se reintenta con la próxima lista publicada
+                    syncedVersions.remove(key);
+                }
+            });
+        }
+    }
+
+    // Actividad aún sin migrar: primero los pasos de dentro (su progreso se escribe ahí,
+    // ActivityRepository.resolveHeaderPaths) y si no el nodo separado, solo de lectura
+    private void loadLegacySteps(String userId, String activityId, StepsCallback callback) {
+        databaseReference.child(DatabasePaths.legacyActivity(activityId)).child("steps").get()
+                .addOnSuccessListener(inlineSteps -> {
+                    if (inlineSteps.exists()) {
+                        saveAndDeliver(userId, activityId, SnapshotCodec.readSteps(inlineSteps.getValue()), callback);
+                    } else {
+                        loadSplitLegacySteps(activityId, callback);
+                    }
+                })
+                .addOnFailureListener(e -> loadSplitLegacySteps(activityId, callback));
+    }
+
+    private void loadSplitLegacySteps(String activityId, StepsCallback callback) {
+        databaseReference.child(DatabasePaths.legacyActivitySteps(activityId)).get()
+                .addOnSuccessListener(legacySnapshot -> {
+                    List<SequenceStep> steps = SnapshotCodec.readSteps(legacySnapshot.getValue());
+                    // Ninguna cabecera apunta a este nodo: el progreso no se guarda aquí
+                    for (SequenceStep step : steps) {
+                        step.setStorageIndex(-1);
+                    }
+                    deliver(steps, callback);
+                })
+                .addOnFailureListener(e -> {
+                    // Sin permiso o sin datos en el formato anterior: la actividad no tiene pasos
+                    System.out.println("STEPS_STORE: Sin pasos antiguos para " + activityId + ": " + e.getMessage());
+                    deliver(new ArrayList<>(), callback);
+                });
+    }
+
+    private void saveAndDeliver(String userId, String activityId, List<SequenceStep> steps, StepsCallback callback) {
+        LocalRoutineStore.getInstance(appContext).saveSteps(userId, activityId, steps);
+        deliver(steps, callback);
+    }
+
+    private void deliver(List<SequenceStep> steps, StepsCallback callback) {
+        // Para el modo niño sin conexión
+        List<Integer> pictogramIds = new ArrayList<>();
+        for (SequenceStep step : steps) {
+            pictogramIds.add(step.getPictogramId());
+        }
+        PictogramOfflineStore.getInstance(appContext).pinAll(pictogramIds);
+        callback.onStepsLoaded(steps);
+    }
+
+    // Copia local de los pasos recién guardados, sin esperar a la próxima sincronización: el modo
+    // niño sin conexión ve ya la versión editada. buildSaveUpdates los escribe en este orden
+    public void saveLocalCopy(String userId, String activityId, List<SequenceStep> steps) {
+        List<SequenceStep> stored = new ArrayList<>(steps.size());
+        for (int i = 0; i < steps.size(); i++) {
+            stored.add(SnapshotCodec.readStep(SnapshotCodec.writeStep(steps.get(i)), i));
+        }
+        LocalRoutineStore.getInstance(appContext).saveSteps(userId, activityId, stored);
+    }
+
+    // Rutas (desde la raíz) para guardar una actividad: cabecera y pasos en un solo updateChildren.
+    // header: campos de la actividad sin los pasos. replaceHeader: true al crear (setValue del nodo),
+    // false al editar (solo esos campos, se conservan completed, currentStepIndex...). Al editar una
+    // actividad que la migración aún no ha movido, la misma escritura borra la copia antigua
+    public static Map<String, Object> buildSaveUpdates(String userId, String activityId, Map<String, Object> header,
+                                                       List<SequenceStep> steps, boolean replaceHeader) {
+        String activityPath = DatabasePaths.activity(userId, activityId);
+        Map<String, Object> updates = new HashMap<>();
+        if (replaceHeader) {
+            updates.put(activityPath, header);
+        } else {
+            for (Map.Entry<String, Object> entry : header.entrySet()) {
+                updates.put(activityPath + "/" + entry.getKey(), entry.getValue());
+            }
+            updates.put(DatabasePaths.legacyActivity(activityId), null);
+            updates.put(DatabasePaths.legacyActivitySteps(activityId), null);
+        }
+        updates.put(DatabasePaths.activitySteps(userId, activityId),
+                steps != null && !steps.isEmpty() ? SnapshotCodec.writeSteps(steps) : null);
+        return updates;
+    }
+
+    // Rutas para borrar una actividad junto con sus pasos, en todos los formatos
+    public static Map<String, Object> buildDeleteUpdates(String userId, String activityId) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(DatabasePaths.activity(userId, activityId), null);
+        updates.put(DatabasePaths.activitySteps(userId, activityId), null);
+        updates.put(DatabasePaths.legacyActivity(activityId), null);
+        updates.put(DatabasePaths.legacyActivitySteps(activityId), null);
+        return updates;
+    }
+
+    // Ruta del campo completed de un paso según dónde esté la cabecera
+    // (ActivityRepository.resolveHeaderPaths). storageIndex = posición en Firebase
+    public static String stepCompletedPath(String userId, String activityId, String headerPath, int storageIndex) {
+        String stepsPath = headerPath.equals(DatabasePaths.activity(userId, activityId))
+                ? DatabasePaths.activitySteps(userId, activityId) : headerPath + "/steps";
+        return stepsPath + "/" + storageIndex + "/completed";
+    }
+}
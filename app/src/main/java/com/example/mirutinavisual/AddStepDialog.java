@@ -14,8 +14,6 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
-
 import java.util.ArrayList;
 import java.util.List;
 
@@ -43,12 +41,13 @@ public class AddStepDialog {
     private List<Pictogram> pictogramsList;
     private PictogramAdapter pictogramAdapter;
     private ArasaacApiService arasaacService;
+    private PictogramSearchDebouncer searchDebouncer;
 
     public AddStepDialog(Context context, OnStepSavedListener listener) {
         this.context = context;
         this.listener = listener;
         this.pictogramsList = new ArrayList<>();
-        this.arasaacService = new ArasaacApiService();
+        this.arasaacService = ArasaacApiService.getInstance(context);
     }
 
     public void showAddDialog() {
@@ -88,6 +87,7 @@ public class AddStepDialog {
         
         // Configurar listeners
         setupClickListeners(dialog);
+        setupSearchAsYouType(dialog);
         
         dialog.show();
     }
@@ -182,61 +182,67 @@ public class AddStepDialog {
         });
     }
 
-    private void searchPictograms(String keyword) {
-        try {
-            System.out.println("STEP_DIALOG: Iniciando búsqueda de pictogramas para: " + keyword);
-            
-            // Mostrar RecyclerView y deshabilitar botón
-            stepPictogramsRecyclerView.setVisibility(View.VISIBLE);
-            searchStepPictogramButton.setEnabled(false);
-            searchStepPictogramButton.setText("🔍...");
-            
-            arasaacService.searchPictograms(keyword, new ArasaacApiService.PictogramSearchCallback() {
-                @Override
-                public void onSuccess(List<Pictogram> pictograms) {
-                    try {
-                        System.out.println("STEP_DIALOG: Pictogramas encontrados: " + pictograms.size());
-                        
-                        // Asegurar que estamos en el hilo principal
-                        if (context instanceof android.app.Activity) {
-                            ((android.app.Activity) context).runOnUiThread(() -> {
-                                try {
-                                    pictogramsList.clear();
-                                    pictogramsList.addAll(pictograms);
-                                    
-                                    if (pictogramAdapter != null) {
-                                        pictogramAdapter.notifyDataSetChanged();
-                                    }
-                                    
-                                    // Restaurar botón
-                                    searchStepPictogramButton.setEnabled(true);
-                                    searchStepPictogramButton.setText("🔍");
-                                    
-                                    if (pictograms.isEmpty()) {
-                                        showToast("No se encontraron pictogramas para: " + keyword);
-                                        stepPictogramsRecyclerView.setVisibility(View.GONE);
-                                    }
-                                    
-                                    System.out.println("STEP_DIALOG: UI actualizada correctamente");
-                                } catch (Exception e) {
-                                    System.out.println("STEP_DIALOG: Error al actualizar UI: " + e.getMessage());
-                                    handleSearchError("Error al mostrar resultados");
-                                }
-                            });
-                        }
-                    } catch (Exception e) {
-                        System.out.println("STEP_DIALOG: Error en onSuccess: " + e.getMessage());
-                        handleSearchError("Error al procesar resultados");
+    // Buscar mientras se escribe; al cerrar el diálogo se cancela lo que quede en curso
+    private void setupSearchAsYouType(AlertDialog dialog) {
+        searchDebouncer = new PictogramSearchDebouncer(arasaacService, new PictogramSearchDebouncer.Listener() {
+            @Override
+            public void onSearchStarted(String keyword) {
+                System.out.println("STEP_DIALOG: Iniciando búsqueda de pictogramas para: " + keyword);
+                
+                // Mostrar RecyclerView y deshabilitar botón
+                stepPictogramsRecyclerView.setVisibility(View.VISIBLE);
+                searchStepPictogramButton.setEnabled(false);
+                searchStepPictogramButton.setText("🔍...");
+            }
+
+            @Override
+            public void onResults(String keyword, List<Pictogram> pictograms) {
+                // Ya en el hilo principal y solo para la última búsqueda
+                try {
+                    System.out.println("STEP_DIALOG: Pictogramas encontrados: " + pictograms.size());
+                    if (pictogramAdapter != null) {
+                        // Primera página; el resto se pide y se enlaza al hacer scroll
+                        pictogramAdapter.submitResults(pictograms,
+                                (offset, callback) -> arasaacService.loadMoreResults(keyword, offset, callback));
+                    }
+                    
+                    // Restaurar botón
+                    searchStepPictogramButton.setEnabled(true);
+                    searchStepPictogramButton.setText("🔍");
+                    
+                    if (pictograms.isEmpty()) {
+                        showToast("No se encontraron pictogramas para: " + keyword);
+                        stepPictogramsRecyclerView.setVisibility(View.GONE);
                     }
+                    
+                    System.out.println("STEP_DIALOG: UI actualizada correctamente");
+                } catch (Exception e) {
+                    System.out.println("STEP_DIALOG: Error al actualizar UI: " + e.getMessage());
+                    handleSearchError("Error al mostrar resultados");
                 }
+            }
 
-                @Override
-                public void onError(String error) {
-                    System.out.println("STEP_DIALOG: Error en búsqueda: " + error);
-                    handleSearchError(error);
-                }
-            });
-            
+            @Override
+            public void onError(String keyword, String error) {
+                System.out.println("STEP_DIALOG: Error en búsqueda: " + error);
+                handleSearchError(error);
+            }
+
+            @Override
+            public void onSearchCancelled() {
+                searchStepPictogramButton.setEnabled(true);
+                searchStepPictogramButton.setText("🔍");
+            }
+        });
+        searchDebouncer.attachTo(stepPictogramSearchEditText);
+        
+        PictogramSearchDebouncer dialogDebouncer = searchDebouncer;
+        dialog.setOnDismissListener(d -> dialogDebouncer.cancel());
+    }
+
+    private void searchPictograms(String keyword) {
+        try {
+            searchDebouncer.searchNow(keyword);
         } catch (Exception e) {
             System.out.println("STEP_DIALOG: Error al iniciar búsqueda: " + e.getMessage());
             handleSearchError("Error al iniciar búsqueda");
@@ -283,14 +289,11 @@ public class AddStepDialog {
                 
                 if (selectedStepPictogramImageView != null) {
                     try {
-                        String imageUrl = "https://api.arasaac.org/api/pictograms/" + selectedPictogram.getId() + "?download=false";
+                        String imageUrl = selectedPictogram.getImageUrl(PictogramSize.THUMBNAIL);
                         System.out.println("STEP_DIALOG: Cargando imagen: " + imageUrl);
                         
-                        Glide.with(context)
-                            .load(imageUrl)
-                            .placeholder(R.drawable.ic_placeholder)
-                            .error(R.drawable.ic_error)
-                            .into(selectedStepPictogramImageView);
+                        PictogramImageLoader.load(selectedStepPictogramImageView, selectedPictogram.getId(),
+                                PictogramSize.THUMBNAIL, R.drawable.ic_placeholder, R.drawable.ic_error);
                     } catch (Exception e) {
                         System.out.println("STEP_DIALOG: Error al cargar imagen con Glide: " + e.getMessage());
                         selectedStepPictogramImageView.setImageResource(R.drawable.ic_placeholder);
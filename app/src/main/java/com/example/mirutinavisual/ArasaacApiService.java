@@ -1,148 +1,525 @@
 package com.example.mirutinavisual;
 
+import android.content.Context;
+import android.content.SharedPreferences;
 import android.widget.ImageView;
 
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.load.engine.DiskCacheStrategy;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ArasaacApiService {
     
     private static final String BASE_URL = "https://api.arasaac.org/api/pictograms";
-    private static final String SEARCH_URL = BASE_URL + "/es/search/";
+    private static final String SEARCH_LOCALE = "es";
+    private static final String SEARCH_URL = BASE_URL + "/" + SEARCH_LOCALE + "/search/";
+    private static final String SEARCH_CACHE_DIR = "arasaac_search";
+    private static final String CATALOG_DIR = "arasaac_catalog";
+    // Resultados por página en la interfaz y máximo que se ofrece por búsqueda
+    public static final int PAGE_SIZE = 12;
+    private static final int MAX_RESULTS = 240;
+    // Cada petición lee una página y dos filas más, para que el scroll no espere a la red
+    private static final int RESULTS_PER_REQUEST = PAGE_SIZE + 6;
+    // Conexiones a medio leer que se pueden seguir leyendo (las búsquedas más recientes)
+    private static final int MAX_OPEN_RESPONSES = 4;
+    
+    private static final String PREFS_NAME = "arasaac_preferences";
+    private static final String KEY_OFFLINE_CATALOG = "offline_catalog_enabled";
+    
+    // Un único pool para toda la app: pocas conexiones simultáneas con ARASAAC
+    private static final int WORKER_THREADS = 2;
+    private static final int MAX_QUEUED_TASKS = 32;
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 30;
+    
+    // Menor valor = se ejecuta antes
+    static final int PRIORITY_SEARCH = 0;
+    static final int PRIORITY_BACKGROUND = 10;
     
-    private ExecutorService executorService;
+    private static volatile ArasaacApiService instance;
+    
+    private final ThreadPoolExecutor executorService;
+    private final ExecutorService cancelExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicLong taskSequence = new AtomicLong();
+    private final PictogramSearchCache searchCache;
+    private final PictogramCatalog catalog;
+    private final SharedPreferences prefs;
+    
+    // Respuestas a medio leer por clave normalizada; al expulsar una se cierra su conexión
+    private final Map<String, PictogramResultStream> openResponses =
+            new LinkedHashMap<String, PictogramResultStream>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PictogramResultStream> eldest) {
+                    if (size() <= MAX_OPEN_RESPONSES) return false;
+                    eldest.getValue().close();
+                    return true;
+                }
+            };
+    
+    // Búsquedas en curso por clave normalizada: una sola llamada de red por término
+    private final Map<String, InFlightSearch> inFlightSearches = new HashMap<>();
     
     public interface PictogramSearchCallback {
         void onSuccess(List<Pictogram> pictograms);
         void onError(String error);
     }
     
-    public ArasaacApiService() {
-        executorService = Executors.newFixedThreadPool(3);
+    // Resultados siguientes de una búsqueda ya mostrada (loadMoreResults)
+    public interface PictogramPageCallback {
+        void onPage(List<Pictogram> pictograms, boolean hasMore);
+        void onError(String error);
     }
     
-    public void searchPictograms(String searchTerm, PictogramSearchCallback callback) {
-        executorService.execute(() -> {
-            try {
-                String encodedTerm = URLEncoder.encode(searchTerm, "UTF-8");
-                String urlString = SEARCH_URL + encodedTerm;
-                
-                // Debug: mostrar URL
-                System.out.println("ARASAAC URL: " + urlString);
-                
-                URL url = new URL(urlString);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("GET");
-                connection.setRequestProperty("User-Agent", "MiRutinaVisual/1.0");
-                connection.setConnectTimeout(10000); // 10 segundos
-                connection.setReadTimeout(15000); // 15 segundos
-                
-                int responseCode = connection.getResponseCode();
-                System.out.println("Response Code: " + responseCode);
-                
-                if (responseCode == HttpURLConnection.HTTP_OK) {
-                    BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(connection.getInputStream()));
-                    StringBuilder response = new StringBuilder();
-                    String line;
-                    
-                    while ((line = reader.readLine()) != null) {
-                        response.append(line);
-                    }
-                    reader.close();
-                    
-                    String jsonResponse = response.toString();
-                    System.out.println("JSON Response: " + jsonResponse.substring(0, Math.min(200, jsonResponse.length())));
-                    
-                    List<Pictogram> pictograms = parsePictograms(jsonResponse);
-                    System.out.println("Pictograms found: " + pictograms.size());
-                    callback.onSuccess(pictograms);
-                    
-                } else {
-                    callback.onError("Error del servidor: " + responseCode);
+    // Permite a una pantalla dejar de esperar una búsqueda ya superada
+    public interface SearchHandle {
+        void cancel();
+    }
+    
+    private static final SearchHandle COMPLETED_SEARCH = () -> { };
+    
+    // Una búsqueda de red compartida por todas las pantallas que esperan el mismo término
+    private static class InFlightSearch {
+        final String cacheKey;
+        final List<PictogramSearchCallback> callbacks = new ArrayList<>();
+        volatile HttpURLConnection connection;
+        volatile boolean cancelled;
+        
+        InFlightSearch(String cacheKey) {
+            this.cacheKey = cacheKey;
+        }
+    }
+    
+    public interface CatalogCallback {
+        void onReady(int pictogramCount);
+        void onError(String error);
+    }
+    
+    public static ArasaacApiService getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ArasaacApiService.class) {
+                if (instance == null) {
+                    instance = new ArasaacApiService(context.getApplicationContext());
                 }
-                
-                connection.disconnect();
-                
+            }
+        }
+        return instance;
+    }
+    
+    private ArasaacApiService(Context appContext) {
+        executorService = new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS,
+                WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new PriorityBlockingQueue<>());
+        executorService.allowCoreThreadTimeOut(true);
+        
+        searchCache = new PictogramSearchCache(new File(appContext.getCacheDir(), SEARCH_CACHE_DIR));
+        
+        // Catálogo sin conexión (opcional): en filesDir para que el sistema no lo borre
+        prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        catalog = new PictogramCatalog(new File(appContext.getFilesDir(), CATALOG_DIR), SEARCH_LOCALE);
+        if (isOfflineCatalogEnabled()) {
+            submit(PRIORITY_BACKGROUND, () -> prepareCatalog(null));
+        }
+    }
+    
+    // Tarea con prioridad; a igual prioridad se respeta el orden de llegada
+    private static class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+        final int priority;
+        final long sequence;
+        final Runnable task;
+        
+        PrioritizedTask(int priority, long sequence, Runnable task) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.task = task;
+        }
+        
+        @Override
+        public void run() {
+            task.run();
+        }
+        
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+    
+    // Encolar con límite: si hay demasiadas tareas pendientes se rechaza la nueva
+    private boolean submit(int priority, Runnable task) {
+        if (executorService.getQueue().size() >= MAX_QUEUED_TASKS) {
+            System.out.println("ARASAAC: Cola llena, tarea descartada");
+            return false;
+        }
+        executorService.execute(new PrioritizedTask(priority, taskSequence.getAndIncrement(), task));
+        return true;
+    }
+    
+    public boolean isOfflineCatalogEnabled() {
+        return prefs.getBoolean(KEY_OFFLINE_CATALOG, false);
+    }
+    
+    // Activar descarga el catálogo una vez; desactivar libera memoria y disco
+    public void setOfflineCatalogEnabled(boolean enabled, CatalogCallback callback) {
+        prefs.edit().putBoolean(KEY_OFFLINE_CATALOG, enabled).apply();
+        boolean queued = submit(PRIORITY_BACKGROUND, () -> {
+            if (enabled) {
+                prepareCatalog(callback);
+            } else {
+                catalog.delete();
+                if (callback != null) {
+                    callback.onReady(0);
+                }
+            }
+        });
+        if (!queued && callback != null) {
+            callback.onError("Demasiadas tareas pendientes, inténtalo de nuevo");
+        }
+    }
+    
+    // Cargar desde disco o descargar, y refrescar en incremental si toca
+    private void prepareCatalog(CatalogCallback callback) {
+        try {
+            if (!catalog.isReady() && !catalog.loadFromDisk()) {
+                catalog.downloadFull();
+            } else if (catalog.needsRefresh()) {
+                catalog.refreshIncremental();
+            }
+        } catch (IOException e) {
+            System.out.println("ARASAAC: Error al preparar catálogo: " + e.getMessage());
+            // Con un catálogo previo en disco se sigue pudiendo buscar
+            if (!catalog.isReady()) {
+                if (callback != null) {
+                    callback.onError("Error de conexión: " + e.getMessage());
+                }
+                return;
+            }
+        }
+        
+        if (callback != null) {
+            callback.onReady(catalog.size());
+        }
+    }
+    
+    public SearchHandle searchPictograms(String searchTerm, PictogramSearchCallback callback) {
+        String cacheKey = PictogramSearchCache.buildKey(searchTerm, SEARCH_LOCALE);
+        
+        // Búsqueda repetida: responder al instante desde memoria
+        List<Pictogram> memoryHit = searchCache.getFromMemory(cacheKey);
+        if (memoryHit != null) {
+            System.out.println("ARASAAC: Resultado desde caché en memoria para: " + cacheKey);
+            callback.onSuccess(memoryHit);
+            return COMPLETED_SEARCH;
+        }
+        
+        // Modo catálogo sin conexión: responder desde el índice local
+        if (catalog.isReady() && isOfflineCatalogEnabled()) {
+            List<Pictogram> localResults = catalog.search(searchTerm, RESULTS_PER_REQUEST);
+            if (localResults != null && !localResults.isEmpty()) {
+                System.out.println("ARASAAC: Resultado desde catálogo local para: " + cacheKey);
+                callback.onSuccess(localResults);
+                return COMPLETED_SEARCH;
+            }
+        }
+        
+        // Misma búsqueda ya en curso: esperar su resultado en lugar de repetirla
+        InFlightSearch search;
+        synchronized (inFlightSearches) {
+            search = inFlightSearches.get(cacheKey);
+            if (search != null) {
+                System.out.println("ARASAAC: Búsqueda ya en curso, uniendo petición para: " + cacheKey);
+                search.callbacks.add(callback);
+                return handleFor(search, callback);
+            }
+            search = new InFlightSearch(cacheKey);
+            search.callbacks.add(callback);
+            inFlightSearches.put(cacheKey, search);
+        }
+        
+        InFlightSearch newSearch = search;
+        boolean queued = submit(PRIORITY_SEARCH, () -> runSearch(searchTerm, newSearch));
+        if (!queued) {
+            deliverError(search, "Demasiadas búsquedas pendientes, inténtalo de nuevo");
+        }
+        return handleFor(search, callback);
+    }
+    
+    private void runSearch(String searchTerm, InFlightSearch search) {
+        // Cancelada mientras esperaba en la cola: ni disco ni red
+        if (search.cancelled) return;
+        
+        try {
+            deliverSuccess(search, loadSearch(searchTerm, search));
+        } catch (IOException e) {
+            if (search.cancelled) {
+                // El socket se cerró a propósito al cancelar: nadie espera el resultado
+                System.out.println("ARASAAC: Búsqueda cancelada: " + search.cacheKey);
+                return;
+            }
+            // Sin conexión: usar resultados caducados si existen
+            List<Pictogram> staleHit = searchCache.getStale(search.cacheKey);
+            if (staleHit != null) {
+                System.out.println("ARASAAC: Sin conexión, usando caché caducada para: " + search.cacheKey);
+                deliverSuccess(search, staleHit);
+            } else {
+                deliverError(search, "Error de conexión: " + e.getMessage());
+            }
+        } catch (ServerException e) {
+            deliverError(search, e.getMessage());
+        } catch (Exception e) {
+            deliverError(search, "Error inesperado: " + e.getMessage());
+        }
+    }
+    
+    // Al cancelar se quita solo este callback; si ya nadie espera se corta la conexión
+    private SearchHandle handleFor(InFlightSearch search, PictogramSearchCallback callback) {
+        return () -> {
+            synchronized (inFlightSearches) {
+                if (!search.callbacks.remove(callback) || !search.callbacks.isEmpty()) {
+                    return;
+                }
+                search.cancelled = true;
+                if (inFlightSearches.get(search.cacheKey) == search) {
+                    inFlightSearches.remove(search.cacheKey);
+                }
+            }
+            
+            HttpURLConnection connection = search.connection;
+            if (connection != null) {
+                System.out.println("ARASAAC: Cancelando conexión para: " + search.cacheKey);
+                // disconnect() cierra el socket y desbloquea la lectura en el otro hilo;
+                // va en su propio hilo porque cerrar TLS puede tocar la red
+                cancelExecutor.execute(connection::disconnect);
+            }
+        };
+    }
+    
+    // Caché en disco y, si no hay, red (se ejecuta en el pool)
+    private List<Pictogram> loadSearch(String searchTerm, InFlightSearch search) throws IOException {
+        String cacheKey = search.cacheKey;
+        
+        // Segundo nivel: caché en disco
+        List<Pictogram> diskHit = searchCache.get(cacheKey);
+        if (diskHit != null) {
+            System.out.println("ARASAAC: Resultado desde caché en disco para: " + cacheKey);
+            return diskHit;
+        }
+        
+        List<Pictogram> pictograms;
+        PictogramResultStream response = download(searchTerm, search);
+        try {
+            pictograms = readPage(cacheKey, response, RESULTS_PER_REQUEST);
+        } finally {
+            // Leída la primera página, cancelar ya no corta esta conexión
+            search.connection = null;
+        }
+        System.out.println("Pictograms found: " + pictograms.size()
+                + (response.hasMore() ? " (hay más)" : ""));
+        searchCache.put(cacheKey, pictograms);
+        return pictograms;
+    }
+    
+    // Siguiente tanda de resultados a partir de offset (los que ya tiene la pantalla).
+    // Sigue leyendo la conexión abierta de la búsqueda; si ya no está, hace una petición nueva
+    public void loadMoreResults(String searchTerm, int offset, PictogramPageCallback callback) {
+        boolean queued = submit(PRIORITY_SEARCH, () -> {
+            try {
+                loadMore(searchTerm, offset, callback);
             } catch (IOException e) {
                 callback.onError("Error de conexión: " + e.getMessage());
+            } catch (ServerException e) {
+                callback.onError(e.getMessage());
             } catch (Exception e) {
                 callback.onError("Error inesperado: " + e.getMessage());
             }
         });
+        if (!queued) {
+            callback.onError("Demasiadas búsquedas pendientes, inténtalo de nuevo");
+        }
     }
     
-    private List<Pictogram> parsePictograms(String jsonResponse) {
-        List<Pictogram> pictograms = new ArrayList<>();
+    private void loadMore(String searchTerm, int offset, PictogramPageCallback callback) throws IOException {
+        if (offset >= MAX_RESULTS) {
+            callback.onPage(Collections.emptyList(), false);
+            return;
+        }
+        int count = Math.min(RESULTS_PER_REQUEST, MAX_RESULTS - offset);
+        
+        // Misma fuente que la primera página (ver searchPictograms)
+        if (catalog.isReady() && isOfflineCatalogEnabled()) {
+            List<Pictogram> localResults = catalog.search(searchTerm, offset + count);
+            if (localResults != null && !localResults.isEmpty()) {
+                List<Pictogram> page = localResults.size() > offset
+                        ? new ArrayList<>(localResults.subList(offset, localResults.size()))
+                        : new ArrayList<>();
+                callback.onPage(page, localResults.size() == offset + count && offset + count < MAX_RESULTS);
+                return;
+            }
+        }
         
+        String cacheKey = PictogramSearchCache.buildKey(searchTerm, SEARCH_LOCALE);
+        List<Pictogram> page = null;
+        PictogramResultStream response = takeResponse(cacheKey, offset);
+        if (response != null) {
+            try {
+                page = readPage(cacheKey, response, count);
+            } catch (IOException e) {
+                // El servidor cerró la conexión mientras esperaba: se pide de nuevo
+                System.out.println("ARASAAC: Conexión abierta perdida para " + cacheKey + ": " + e.getMessage());
+                response = null;
+            }
+        }
+        if (response == null) {
+            // Otra sesión o conexión ya cerrada: pedir de nuevo y saltar lo que ya se mostró
+            System.out.println("ARASAAC: Pidiendo de nuevo para continuar: " + cacheKey);
+            response = download(searchTerm, null);
+            try {
+                response.next(offset);
+            } catch (IOException e) {
+                response.close();
+                throw e;
+            }
+            page = readPage(cacheKey, response, count);
+        }
+        boolean hasMore = response.hasMore() && offset + page.size() < MAX_RESULTS;
+        
+        // Ampliar la entrada de caché si sigue justo donde empieza esta página
+        List<Pictogram> cached = searchCache.get(cacheKey);
+        if (cached != null && cached.size() == offset) {
+            cached.addAll(page);
+            searchCache.put(cacheKey, cached);
+        }
+        callback.onPage(page, hasMore);
+    }
+    
+    // Leer una página y dejar la respuesta abierta si quedan resultados
+    private List<Pictogram> readPage(String cacheKey, PictogramResultStream response, int count) throws IOException {
         try {
-            JSONArray jsonArray = new JSONArray(jsonResponse);
-            
-            // Limitar a 12 resultados para no sobrecargar la interfaz
-            int maxResults = Math.min(jsonArray.length(), 12);
-            
-            for (int i = 0; i < maxResults; i++) {
-                JSONObject pictogramJson = jsonArray.getJSONObject(i);
-                
-                int id = pictogramJson.getInt("_id");
-                
-                // Obtener keywords
-                List<String> keywords = new ArrayList<>();
-                if (pictogramJson.has("keywords")) {
-                    JSONArray keywordsArray = pictogramJson.getJSONArray("keywords");
-                    for (int j = 0; j < keywordsArray.length(); j++) {
-                        JSONObject keywordObj = keywordsArray.getJSONObject(j);
-                        if (keywordObj.has("keyword")) {
-                            keywords.add(keywordObj.getString("keyword"));
-                        }
+            List<Pictogram> page = response.next(count);
+            if (response.hasMore()) {
+                synchronized (openResponses) {
+                    PictogramResultStream previous = openResponses.put(cacheKey, response);
+                    if (previous != null && previous != response) {
+                        previous.close();
                     }
                 }
-                
-                // Si no hay keywords, usar un placeholder
-                if (keywords.isEmpty()) {
-                    keywords.add("Pictograma " + id);
-                }
-                
-                Pictogram pictogram = new Pictogram(id, keywords);
-                pictograms.add(pictogram);
+                response = null;
             }
-            
-        } catch (JSONException e) {
-            e.printStackTrace();
+            return page;
+        } finally {
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
+    
+    // La respuesta guardada solo sirve si está justo en la posición pedida
+    private PictogramResultStream takeResponse(String cacheKey, int offset) {
+        synchronized (openResponses) {
+            PictogramResultStream response = openResponses.remove(cacheKey);
+            if (response != null && response.position() != offset) {
+                response.close();
+                return null;
+            }
+            return response;
         }
+    }
+    
+    // Abrir la búsqueda sin leer el cuerpo: se parsea desde la conexión página a página.
+    // search es null al continuar una búsqueda
+    private PictogramResultStream download(String searchTerm, InFlightSearch search) throws IOException {
+        String encodedTerm = URLEncoder.encode(searchTerm, "UTF-8");
+        String urlString = SEARCH_URL + encodedTerm;
         
-        return pictograms;
+        // Debug: mostrar URL
+        System.out.println("ARASAAC URL: " + urlString);
+        
+        URL url = new URL(urlString);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("GET");
+        connection.setRequestProperty("User-Agent", "MiRutinaVisual/1.0");
+        connection.setConnectTimeout(10000); // 10 segundos
+        connection.setReadTimeout(15000); // 15 segundos
+        
+        if (search != null) {
+            search.connection = connection;
+        }
+        boolean opened = false;
+        try {
+            if (search != null && search.cancelled) {
+                throw new IOException("Búsqueda cancelada");
+            }
+            
+            int responseCode = connection.getResponseCode();
+            System.out.println("Response Code: " + responseCode);
+            
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new ServerException(responseCode);
+            }
+            
+            PictogramResultStream response = new PictogramResultStream(connection);
+            opened = true;
+            return response;
+        } finally {
+            if (!opened) {
+                if (search != null) {
+                    search.connection = null;
+                }
+                connection.disconnect();
+            }
+        }
     }
     
-    public void loadPictogramImage(Pictogram pictogram, ImageView imageView) {
-        if (pictogram != null && imageView != null) {
-            Glide.with(imageView.getContext())
-                    .load(pictogram.getImageUrl())
-                    .diskCacheStrategy(DiskCacheStrategy.ALL)
-                    .placeholder(R.drawable.ic_image_placeholder)
-                    .error(R.drawable.ic_image_error)
-                    .into(imageView);
+    // Respuesta HTTP distinta de 200: no es un fallo de conexión, no usar caché caducada
+    private static class ServerException extends RuntimeException {
+        ServerException(int responseCode) {
+            super("Error del servidor: " + responseCode);
         }
     }
     
-    public void shutdown() {
-        if (executorService != null) {
-            executorService.shutdown();
+    private List<PictogramSearchCallback> takeWaiting(InFlightSearch search) {
+        synchronized (inFlightSearches) {
+            if (inFlightSearches.get(search.cacheKey) == search) {
+                inFlightSearches.remove(search.cacheKey);
+            }
+            List<PictogramSearchCallback> waiting = new ArrayList<>(search.callbacks);
+            search.callbacks.clear();
+            return waiting;
+        }
+    }
+    
+    private void deliverSuccess(InFlightSearch search, List<Pictogram> pictograms) {
+        for (PictogramSearchCallback waitingCallback : takeWaiting(search)) {
+            // Cada pantalla recibe su propia copia de la lista
+            waitingCallback.onSuccess(new ArrayList<>(pictograms));
+        }
+    }
+    
+    private void deliverError(InFlightSearch search, String error) {
+        for (PictogramSearchCallback waitingCallback : takeWaiting(search)) {
+            waitingCallback.onError(error);
+        }
+    }
+    
+    public void loadPictogramImage(Pictogram pictogram, ImageView imageView) {
+        if (pictogram != null && imageView != null) {
+            // Cuadrículas y vista previa de selección: basta la miniatura
+            PictogramImageLoader.load(imageView, pictogram.getId(), PictogramSize.THUMBNAIL,
+                    R.drawable.ic_image_placeholder, R.drawable.ic_image_error);
         }
     }
 }
@@ -2,6 +2,8 @@ package com.example.mirutinavisual;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.speech.tts.TextToSpeech;
 import android.view.View;
 import android.widget.ImageButton;
@@ -36,7 +38,17 @@ public class CaregiverModeActivity extends AppCompatActivity implements TextToSp
     private RecyclerView recentActivitiesRecyclerView;
     
     private ActivityAdapter recentActivitiesAdapter;
-    private List<Activity> recentActivitiesList;
+    
+    // Completadas de hoy desde el contador del día (rollups), no recorriendo las actividades
+    private int totalActivities;
+    private int completedToday;
+    private DatabaseReference todayCounterRef;
+    private ValueEventListener todayCounterListener;
+    // El contador es el del día en que se abrió: a medianoche se pasa al del día nuevo
+    private final Handler rolloverHandler = new Handler(Looper.getMainLooper());
+    private final Runnable rolloverTask = this::onDayRollover;
+    private String todayCounterUserId;
+    private String todayCounterDayKey;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -50,9 +62,6 @@ public class CaregiverModeActivity extends AppCompatActivity implements TextToSp
         // Inicializar Text-to-Speech
         textToSpeech = new TextToSpeech(this, this);
         
-        // Inicializar lista
-        recentActivitiesList = new ArrayList<>();
-        
         // Inicializar vistas
         initViews();
         
@@ -85,7 +94,7 @@ public class CaregiverModeActivity extends AppCompatActivity implements TextToSp
     }
 
     private void setupRecyclerView() {
-        recentActivitiesAdapter = new ActivityAdapter(recentActivitiesList, new ActivityAdapter.OnActivityClickListener() {
+        recentActivitiesAdapter = new ActivityAdapter(new ActivityAdapter.OnActivityClickListener() {
             @Override
             public void onActivityClick(Activity activity) {
                 showActivityManagementOptions(activity);
@@ -148,54 +157,77 @@ public class CaregiverModeActivity extends AppCompatActivity implements TextToSp
         
         String userId = firebaseAuth.getCurrentUser().getUid();
         
-        databaseReference.child("activities")
-                .orderByChild("userId")
-                .equalTo(userId)
-                .addValueEventListener(new ValueEventListener() {
-                    @Override
-                    public void onDataChange(DataSnapshot dataSnapshot) {
-                        int totalActivities = 0;
-                        int completedActivities = 0;
-                        int pendingActivities = 0;
-                        
-                        recentActivitiesList.clear();
-                        
-                        for (DataSnapshot activitySnapshot : dataSnapshot.getChildren()) {
-                            Activity activity = activitySnapshot.getValue(Activity.class);
-                            if (activity != null) {
-                                activity.setId(activitySnapshot.getKey());
-                                
-                                totalActivities++;
-                                if (activity.isCompleted()) {
-                                    completedActivities++;
-                                } else {
-                                    pendingActivities++;
-                                }
-                                
-                                // Agregar a la lista de actividades recientes (máximo 5)
-                                if (recentActivitiesList.size() < 5) {
-                                    recentActivitiesList.add(activity);
-                                }
-                            }
-                        }
-                        
-                        // Actualizar estadísticas en la UI
-                        updateStatisticsUI(totalActivities, completedActivities, pendingActivities);
-                        
-                        // Actualizar lista de actividades recientes
-                        recentActivitiesAdapter.notifyDataSetChanged();
-                    }
+        // Listener compartido con las demás pantallas; se suelta solo en onDestroy
+        ActivityRepository.getInstance(this).observe(this, userId, new ActivityRepository.ActivitiesObserver() {
+            @Override
+            public void onActivitiesChanged(List<Activity> activities) {
+                totalActivities = activities.size();
+                updateStatisticsUI();
+                
+                // Actividades recientes (máximo 5; solo las filas que cambian)
+                recentActivitiesAdapter.submitList(new ArrayList<>(
+                        activities.subList(0, Math.min(5, activities.size()))));
+            }
 
-                    @Override
-                    public void onCancelled(DatabaseError databaseError) {
-                        showToast("Error al cargar estadísticas: " + databaseError.getMessage());
-                    }
-                });
+            @Override
+            public void onError(String error) {
+                showToast("Error al cargar estadísticas: " + error);
+            }
+        });
+        
+        todayCounterUserId = userId;
+        bindTodayCounter();
+    }
+
+    private void bindTodayCounter() {
+        if (todayCounterRef != null && todayCounterListener != null) {
+            todayCounterRef.removeEventListener(todayCounterListener);
+        }
+        long now = System.currentTimeMillis();
+        todayCounterDayKey = CompletionLog.dayKey(now);
+        todayCounterRef = CompletionRollups.dayRef(databaseReference, todayCounterUserId, now);
+        todayCounterListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                // Aviso ya en cola del contador de ayer
+                if (todayCounterListener != this) return;
+                completedToday = (int) CompletionRollups.parse(dataSnapshot).completed;
+                updateStatisticsUI();
+            }
+
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                showToast("Error al cargar estadísticas: " + databaseError.getMessage());
+            }
+        };
+        todayCounterRef.addValueEventListener(todayCounterListener);
+    }
+
+    private void onDayRollover() {
+        if (todayCounterUserId != null && !CompletionLog.dayKey(System.currentTimeMillis()).equals(todayCounterDayKey)) {
+            bindTodayCounter();
+        }
+        rolloverHandler.removeCallbacks(rolloverTask);
+        rolloverHandler.postDelayed(rolloverTask, CompletionRollups.millisUntilNextDay(System.currentTimeMillis()));
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Vuelta a una pantalla abierta otro día, y aviso a la próxima medianoche
+        onDayRollover();
     }
 
-    private void updateStatisticsUI(int total, int completed, int pending) {
-        totalActivitiesText.setText(String.valueOf(total));
-        completedActivitiesText.setText(String.valueOf(completed));
+    @Override
+    protected void onPause() {
+        rolloverHandler.removeCallbacks(rolloverTask);
+        super.onPause();
+    }
+
+    private void updateStatisticsUI() {
+        int pending = Math.max(0, totalActivities - completedToday);
+        totalActivitiesText.setText(String.valueOf(totalActivities));
+        completedActivitiesText.setText(String.valueOf(completedToday));
         pendingActivitiesText.setText(String.valueOf(pending));
     }
 
@@ -253,9 +285,11 @@ public class CaregiverModeActivity extends AppCompatActivity implements TextToSp
         builder.setMessage("¿Estás seguro de que quieres eliminar '" + activity.getName() + "'?");
         
         builder.setPositiveButton("Eliminar", (dialog, which) -> {
-            if (activity.getId() != null) {
-                databaseReference.child("activities").child(activity.getId())
-                        .removeValue()
+            if (activity.getId() != null && firebaseAuth.getCurrentUser() != null) {
+                // Cabecera y pasos a la vez
+                String userId = firebaseAuth.getCurrentUser().getUid();
+                SyncOutbox.getInstance(this).updateChildren(userId,
+                        ActivityStepsStore.buildDeleteUpdates(userId, activity.getId()))
                         .addOnSuccessListener(aVoid -> {
                             speakText("Actividad eliminada: " + activity.getName());
                             showToast("Actividad eliminada");
@@ -308,8 +342,42 @@ public class CaregiverModeActivity extends AppCompatActivity implements TextToSp
                 "• Modo sin conexión");
         
         builder.setPositiveButton("Entendido", null);
+        
+        // Catálogo de pictogramas sin conexión (descarga única de palabras clave)
+        boolean offlineEnabled = ArasaacApiService.getInstance(this).isOfflineCatalogEnabled();
+        builder.setNeutralButton(offlineEnabled ? "Desactivar sin conexión" : "Activar sin conexión",
+                (dialog, which) -> toggleOfflineCatalog(!offlineEnabled));
         builder.show();
     }
+    
+    private void toggleOfflineCatalog(boolean enable) {
+        if (enable) {
+            speakText("Descargando pictogramas para usar sin conexión");
+            showToast("Descargando catálogo de pictogramas...");
+        }
+        
+        ArasaacApiService.getInstance(this).setOfflineCatalogEnabled(enable, new ArasaacApiService.CatalogCallback() {
+            @Override
+            public void onReady(int pictogramCount) {
+                runOnUiThread(() -> {
+                    if (enable) {
+                        speakText("Catálogo sin conexión listo");
+                        showToast("Catálogo listo: " + pictogramCount + " pictogramas");
+                    } else {
+                        showToast("Catálogo sin conexión desactivado");
+                    }
+                });
+            }
+            
+            @Override
+            public void onError(String error) {
+                runOnUiThread(() -> {
+                    speakText("No se pudo descargar el catálogo");
+                    showToast("Error: " + error);
+                });
+            }
+        });
+    }
 
     private void showHelpDialog() {
         androidx.appcompat.app.AlertDialog.Builder builder = new androidx.appcompat.app.AlertDialog.Builder(this);
@@ -366,6 +434,9 @@ public class CaregiverModeActivity extends AppCompatActivity implements TextToSp
 
     @Override
     protected void onDestroy() {
+        if (todayCounterRef != null && todayCounterListener != null) {
+            todayCounterRef.removeEventListener(todayCounterListener);
+        }
         if (textToSpeech != null) {
             textToSpeech.stop();
             textToSpeech.shutdown();
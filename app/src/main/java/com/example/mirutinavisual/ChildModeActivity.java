@@ -3,10 +3,8 @@ package com.example.mirutinavisual;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
 import android.speech.tts.TextToSpeech;
-import android.util.Base64;
 import android.widget.ImageButton;
 import android.widget.ImageView;
 import android.widget.TextView;
@@ -143,32 +141,27 @@ public class ChildModeActivity extends AppCompatActivity implements TextToSpeech
             }
         }
         
-        // SEGUNDO: Si no hay pictograma, buscar imagen de foto
-        String imageString = sharedPreferences.getString("profile_image_" + userId, "");
-        
-        if (!imageString.isEmpty()) {
-            try {
-                // Decodificar imagen desde Base64
-                byte[] decodedString = Base64.decode(imageString, Base64.DEFAULT);
-                Bitmap bitmap = BitmapFactory.decodeByteArray(decodedString, 0, decodedString.length);
-                
-                if (bitmap != null) {
-                    // Mostrar imagen de perfil real
-                    profileRewardImage.setImageBitmap(bitmap);
-                    profileRewardImage.setScaleType(ImageView.ScaleType.CENTER_CROP);
-                    profileRewardImage.setPadding(0, 0, 0, 0);
-                } else {
-                    // Usar ícono por defecto si hay error
-                    setDefaultProfileImage();
-                }
-            } catch (Exception e) {
-                // En caso de error, usar ícono por defecto
-                setDefaultProfileImage();
-            }
-        } else {
-            // No hay imagen guardada, usar ícono por defecto
-            setDefaultProfileImage();
+        // SEGUNDO: Si no hay pictograma, buscar la foto guardada en archivo
+        ProfileImageStore profileImageStore = ProfileImageStore.getInstance(this);
+        Bitmap cached = profileImageStore.getCached(userId);
+        if (cached != null) {
+            showProfilePhoto(cached);
+            return;
         }
+
+        // Mientras se decodifica en segundo plano, ícono por defecto
+        setDefaultProfileImage();
+        profileImageStore.load(userId, bitmap -> {
+            if (bitmap != null && !isFinishing()) {
+                showProfilePhoto(bitmap);
+            }
+        });
+    }
+
+    private void showProfilePhoto(Bitmap bitmap) {
+        profileRewardImage.setImageBitmap(bitmap);
+        profileRewardImage.setScaleType(ImageView.ScaleType.CENTER_CROP);
+        profileRewardImage.setPadding(0, 0, 0, 0);
     }
     
     private void loadPictogramAsAvatar(String pictogramId) {
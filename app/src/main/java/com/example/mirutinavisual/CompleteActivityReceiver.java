@@ -5,26 +5,48 @@ import android.content.Context;
 import android.content.Intent;
 import android.widget.Toast;
 
-import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.database.FirebaseDatabase;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class CompleteActivityReceiver extends BroadcastReceiver {
     
     @Override
     public void onReceive(Context context, Intent intent) {
         String activityId = intent.getStringExtra("activity_id");
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
         
-        if (activityId != null) {
+        if (activityId != null && currentUser != null) {
             // Marcar actividad como completada en Firebase
-            DatabaseReference databaseReference = FirebaseDatabase.getInstance().getReference();
-            databaseReference.child("activities").child(activityId)
-                    .child("completed").setValue(true)
-                    .addOnSuccessListener(aVoid -> {
-                        Toast.makeText(context, "¡Actividad completada! 🎉", Toast.LENGTH_SHORT).show();
-                    })
-                    .addOnFailureListener(e -> {
-                        Toast.makeText(context, "Error al completar actividad", Toast.LENGTH_SHORT).show();
-                    });
+            // El outbox guarda la escritura en disco por si el proceso termina antes de que
+            // Firebase la confirme. goAsync: el receptor sigue activo mientras se busca la cabecera
+            String userId = currentUser.getUid();
+            Context appContext = context.getApplicationContext();
+            // Registro del día: los contadores solo suman si la entrada es nueva
+            CompletionLog.recordStatus(FirebaseDatabase.getInstance().getReference(), userId, activityId,
+                    true, System.currentTimeMillis(),
+                    rollups -> SyncOutbox.getInstance(appContext).updateChildren(userId, rollups));
+            
+            PendingResult pendingResult = goAsync();
+            ActivityRepository.resolveHeaderPaths(userId, activityId, headerPaths -> {
+                // Sin migrar: el campo va al nodo antiguo, que la migración mueve después
+                Map<String, Object> updates = new HashMap<>();
+                for (String headerPath : headerPaths) {
+                    updates.put(headerPath + "/completed", true);
+                }
+                
+                SyncOutbox.getInstance(context).updateChildren(userId, updates)
+                        .addOnSuccessListener(aVoid -> {
+                            Toast.makeText(context, "¡Actividad completada! 🎉", Toast.LENGTH_SHORT).show();
+                        })
+                        .addOnFailureListener(e -> {
+                            Toast.makeText(context, "Error al completar actividad", Toast.LENGTH_SHORT).show();
+                        });
+                pendingResult.finish();
+            });
         }
     }
 }
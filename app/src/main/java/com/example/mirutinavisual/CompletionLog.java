@@ -0,0 +1,92 @@
+package com.example.mirutinavisual;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.Transaction;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Registro de completadas por usuario y día: completions/<uid>/<yyyy-MM-dd>/<activityId>.
+// Las claves de día ordenan igual que las fechas, así se puede pedir solo un rango
+// (orderByKey + startAt/endAt). Cada entrada suma también en CompletionRollups: las
+// escrituras pasan por recordStatus para que una misma entrada no sume dos veces.
+public final class CompletionLog {
+
+    public static final String DAY_PATTERN = "yyyy-MM-dd";
+
+    private CompletionLog() {
+    }
+
+    public interface RollupsCallback {
+        // Incrementos de los contadores (rutas desde la raíz). Solo se llama si esta llamada
+        // cambió la entrada; hay que enviarlos (p. ej. con SyncOutbox)
+        void onRollupUpdates(Map<String, Object> updates);
+    }
+
+    public static String dayKey(long timeMillis) {
+        // Locale.US: dígitos ASCII para que la clave ordene bien en Firebase
+        return new SimpleDateFormat(DAY_PATTERN, Locale.US).format(timeMillis);
+    }
+
+    // Clave del día que está daysAgo días antes del de timeMillis
+    public static String dayKeyBefore(long timeMillis, int daysAgo) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timeMillis);
+        calendar.add(Calendar.DAY_OF_YEAR, -daysAgo);
+        return dayKey(calendar.getTimeInMillis());
+    }
+
+    public static String entryPath(String userId, String dayKey, String activityId) {
+        return DatabasePaths.completions(userId) + "/" + dayKey + "/" + activityId;
+    }
+
+    // Marcar o desmarcar la actividad en el registro del día de completedAt. La entrada se
+    // cambia en una transacción: solo quien la crea (o la borra) de verdad suma (o resta) en los
+    // contadores, aunque dos dispositivos o un reintento lo hagan a la vez. Si la transacción
+    // falla no se cuenta nada. Sin conexión espera a que vuelva la red
+    public static void recordStatus(DatabaseReference root, String userId, String activityId,
+                                    boolean completed, long completedAt, RollupsCallback callback) {
+        root.child(entryPath(userId, dayKey(completedAt), activityId)).runTransaction(new Transaction.Handler() {
+            @Override
+            public Transaction.Result doTransaction(MutableData currentData) {
+                boolean logged = currentData.getValue() != null;
+                if (completed == logged) {
+                    // Ya está como se pide: no se escribe ni se cuenta
+                    return Transaction.abort();
+                }
+                currentData.setValue(completed ? buildEntry(completedAt) : null);
+                return Transaction.success(currentData);
+            }
+
+            @Override
+            public void onComplete(DatabaseError error, boolean committed, DataSnapshot currentData) {
+                if (error != null) {
+                    System.out.println("COMPLETION_LOG: No se pudo registrar " + activityId + ": " + error.getMessage());
+                    return;
+                }
+                if (committed) {
+                    callback.onRollupUpdates(buildRollupUpdates(userId, completedAt, completed ? 1 : -1));
+                }
+            }
+        });
+    }
+
+    static Map<String, Object> buildEntry(long completedAt) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("completedAt", completedAt);
+        return entry;
+    }
+
+    // Incrementos de los contadores del día, la semana y el mes de completedAt
+    static Map<String, Object> buildRollupUpdates(String userId, long completedAt, long delta) {
+        Map<String, Object> updates = new HashMap<>();
+        CompletionRollups.addIncrements(updates, userId, completedAt, delta);
+        return updates;
+    }
+}
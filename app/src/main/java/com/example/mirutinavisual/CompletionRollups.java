@@ -0,0 +1,117 @@
+package com.example.mirutinavisual;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ServerValue;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.Map;
+
+// Contadores de completadas ya sumados por día, semana ISO y mes:
+// rollups/<uid>/day/<yyyy-MM-dd>, rollups/<uid>/week/<yyyy-Www>, rollups/<uid>/month/<yyyy-MM>.
+// Se incrementan en la misma escritura que registra la completada (CompletionLog), así los
+// paneles leen un nodo por ventana aunque el usuario tenga años de historial.
+public final class CompletionRollups {
+
+    public static final String DAY = "day";
+    public static final String WEEK = "week";
+    public static final String MONTH = "month";
+
+    // Valor de un contador (vacío si ese periodo no tiene completadas)
+    public static class Counter {
+        public final long completed;
+        public final long lastCompletedAt;
+
+        Counter(long completed, long lastCompletedAt) {
+            this.completed = completed;
+            this.lastCompletedAt = lastCompletedAt;
+        }
+    }
+
+    private CompletionRollups() {
+    }
+
+    // Semana ISO 8601: empieza en lunes y la primera es la que tiene el primer jueves
+    public static String weekKey(long timeMillis) {
+        Calendar calendar = isoCalendar(timeMillis);
+        return String.format(Locale.US, "%d-W%02d",
+                calendar.getWeekYear(), calendar.get(Calendar.WEEK_OF_YEAR));
+    }
+
+    public static String monthKey(long timeMillis) {
+        return new SimpleDateFormat("yyyy-MM", Locale.US).format(timeMillis);
+    }
+
+    // Días de la semana ISO transcurridos hasta hoy incluido (lunes = 1)
+    public static int daysElapsedInWeek(long timeMillis) {
+        int dayOfWeek = isoCalendar(timeMillis).get(Calendar.DAY_OF_WEEK);
+        return dayOfWeek == Calendar.SUNDAY ? 7 : dayOfWeek - Calendar.MONDAY + 1;
+    }
+
+    public static int daysElapsedInMonth(long timeMillis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timeMillis);
+        return calendar.get(Calendar.DAY_OF_MONTH);
+    }
+
+    // Hasta la próxima medianoche local: ahí cambian las claves de día, semana y mes
+    public static long millisUntilNextDay(long timeMillis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timeMillis);
+        calendar.add(Calendar.DAY_OF_YEAR, 1);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis() - timeMillis;
+    }
+
+    public static String counterPath(String userId, String period, String periodKey) {
+        return DatabasePaths.rollups(userId) + "/" + period + "/" + periodKey;
+    }
+
+    public static DatabaseReference dayRef(DatabaseReference root, String userId, long timeMillis) {
+        return root.child(counterPath(userId, DAY, CompletionLog.dayKey(timeMillis)));
+    }
+
+    public static DatabaseReference weekRef(DatabaseReference root, String userId, long timeMillis) {
+        return root.child(counterPath(userId, WEEK, weekKey(timeMillis)));
+    }
+
+    public static DatabaseReference monthRef(DatabaseReference root, String userId, long timeMillis) {
+        return root.child(counterPath(userId, MONTH, monthKey(timeMillis)));
+    }
+
+    // Añade a updates los incrementos de los tres periodos de timeMillis.
+    // ServerValue.increment lo suma el servidor: dos dispositivos a la vez no se pisan
+    public static void addIncrements(Map<String, Object> updates, String userId, long timeMillis, long delta) {
+        String[] paths = {
+                counterPath(userId, DAY, CompletionLog.dayKey(timeMillis)),
+                counterPath(userId, WEEK, weekKey(timeMillis)),
+                counterPath(userId, MONTH, monthKey(timeMillis))
+        };
+        for (String path : paths) {
+            updates.put(path + "/completed", ServerValue.increment(delta));
+            if (delta > 0) {
+                updates.put(path + "/lastCompletedAt", timeMillis);
+            }
+        }
+    }
+
+    public static Counter parse(DataSnapshot counterSnapshot) {
+        Long completed = counterSnapshot.child("completed").getValue(Long.class);
+        Long lastCompletedAt = counterSnapshot.child("lastCompletedAt").getValue(Long.class);
+        return new Counter(completed != null ? Math.max(0, completed) : 0,
+                lastCompletedAt != null ? lastCompletedAt : 0);
+    }
+
+    private static Calendar isoCalendar(long timeMillis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setFirstDayOfWeek(Calendar.MONDAY);
+        calendar.setMinimalDaysInFirstWeek(4);
+        calendar.setTimeInMillis(timeMillis);
+        return calendar;
+    }
+}
@@ -31,7 +31,6 @@ import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -59,6 +58,7 @@ public class CreateRoutineActivity extends AppCompatActivity implements TextToSp
     private List<Pictogram> pictogramList;
     private Pictogram selectedPictogram;
     private ArasaacApiService arasaacService;
+    private PictogramSearchDebouncer searchDebouncer;
     
     // Variables para modo edición
     private boolean isEditMode = false;
@@ -80,7 +80,7 @@ public class CreateRoutineActivity extends AppCompatActivity implements TextToSp
         textToSpeech = new TextToSpeech(this, this);
         
         // Inicializar servicio ARASAAC
-        arasaacService = new ArasaacApiService();
+        arasaacService = ArasaacApiService.getInstance(this);
         
         // Inicializar listas
         pictogramList = new ArrayList<>();
@@ -94,6 +94,7 @@ public class CreateRoutineActivity extends AppCompatActivity implements TextToSp
         
         // Configurar listeners
         setupClickListeners();
+        setupSearchAsYouType();
         
         // Verificar si viene en modo edición
         checkEditMode();
@@ -217,42 +218,53 @@ public class CreateRoutineActivity extends AppCompatActivity implements TextToSp
         });
     }
 
-    private void searchPictograms(String searchTerm) {
-        // Mostrar indicador de carga
-        searchButton.setEnabled(false);
-        searchButton.setText("Buscando...");
-        
-        // Buscar pictogramas usando ARASAAC API
-        arasaacService.searchPictograms(searchTerm, new ArasaacApiService.PictogramSearchCallback() {
+    // Buscar mientras se escribe; el botón sigue lanzando la búsqueda al instante
+    private void setupSearchAsYouType() {
+        searchDebouncer = new PictogramSearchDebouncer(arasaacService, new PictogramSearchDebouncer.Listener() {
             @Override
-            public void onSuccess(List<Pictogram> pictograms) {
-                runOnUiThread(() -> {
-                    pictogramList.clear();
-                    pictogramList.addAll(pictograms);
-                    pictogramAdapter.notifyDataSetChanged();
-                    
-                    searchButton.setEnabled(true);
-                    searchButton.setText("🔍 Buscar");
-                    
-                    if (pictograms.isEmpty()) {
-                        speakText("No se encontraron pictogramas. Intenta con otra palabra");
-                        showToast("No se encontraron resultados");
-                    } else {
-                        speakText("Se encontraron " + pictograms.size() + " pictogramas. Toca uno para seleccionarlo");
-                    }
-                });
+            public void onSearchStarted(String term) {
+                // Mostrar indicador de carga
+                searchButton.setEnabled(false);
+                searchButton.setText("Buscando...");
+            }
+
+            @Override
+            public void onResults(String term, List<Pictogram> pictograms) {
+                // El adapter muestra la primera página y pide el resto al hacer scroll
+                pictogramAdapter.submitResults(pictograms,
+                        (offset, callback) -> arasaacService.loadMoreResults(term, offset, callback));
+                
+                searchButton.setEnabled(true);
+                searchButton.setText("🔍 Buscar");
+                
+                if (pictograms.isEmpty()) {
+                    speakText("No se encontraron pictogramas. Intenta con otra palabra");
+                    showToast("No se encontraron resultados");
+                } else {
+                    speakText("Se encontraron pictogramas. Toca uno para seleccionarlo");
+                }
+            }
+
+            @Override
+            public void onError(String term, String error) {
+                searchButton.setEnabled(true);
+                searchButton.setText("🔍 Buscar");
+                speakText("Error al buscar pictogramas. Verifica tu conexión a internet");
+                showToast("Error: " + error);
             }
 
             @Override
-            public void onError(String error) {
-                runOnUiThread(() -> {
-                    searchButton.setEnabled(true);
-                    searchButton.setText("🔍 Buscar");
-                    speakText("Error al buscar pictogramas. Verifica tu conexión a internet");
-                    showToast("Error: " + error);
-                });
+            public void onSearchCancelled() {
+                searchButton.setEnabled(true);
+                searchButton.setText("🔍 Buscar");
             }
         });
+        searchDebouncer.attachTo(searchPictogramEditText);
+    }
+
+    private void searchPictograms(String searchTerm) {
+        // Buscar pictogramas usando ARASAAC API (reemplaza cualquier búsqueda anterior)
+        searchDebouncer.searchNow(searchTerm);
     }
 
     private void selectPictogram(Pictogram pictogram) {
@@ -362,44 +374,24 @@ public class CreateRoutineActivity extends AppCompatActivity implements TextToSp
         System.out.println("GUARDAR: Hora seleccionada: " + timeString + " (hora=" + hour + ", minuto=" + minute + ")");
 
         // Crear objeto de actividad
-        Map<String, Object> activity = new HashMap<>();
-        activity.put("name", activityName);
-        activity.put("time", timeString);
-        activity.put("pictogramId", selectedPictogram.getId());
+        Activity definition = new Activity();
+        definition.setName(activityName);
+        definition.setTime(timeString);
+        definition.setPictogramId(selectedPictogram.getId());
         // Usar la primera palabra clave si existe
         if (selectedPictogram.getKeywords() != null && !selectedPictogram.getKeywords().isEmpty()) {
-            activity.put("pictogramKeyword", selectedPictogram.getKeywords().get(0));
+            definition.setPictogramKeyword(selectedPictogram.getKeywords().get(0));
         } else {
-            activity.put("pictogramKeyword", "pictograma");
+            definition.setPictogramKeyword("pictograma");
         }
-        activity.put("createdAt", System.currentTimeMillis());
-        activity.put("userId", firebaseAuth.getCurrentUser().getUid());
+        definition.setCreatedAt(System.currentTimeMillis());
+        definition.setUserId(firebaseAuth.getCurrentUser().getUid());
         
         // *** AGREGAR PASOS PERSONALIZADOS ***
+        // Los pasos van en userActivitySteps/<uid>/<id>, fuera de la cabecera
         if (!customStepsList.isEmpty()) {
-            activity.put("isSequence", true);
-            activity.put("totalSteps", customStepsList.size());
-            
-            // Convertir pasos a Map para Firebase
-            List<Map<String, Object>> stepsMapList = new ArrayList<>();
-            for (SequenceStep step : customStepsList) {
-                Map<String, Object> stepMap = new HashMap<>();
-                stepMap.put("id", step.getId());
-                stepMap.put("name", step.getName());
-                stepMap.put("description", step.getDescription());
-                stepMap.put("pictogramId", step.getPictogramId());
-                stepMap.put("pictogramKeyword", step.getPictogramKeyword());
-                stepMap.put("stepNumber", step.getStepNumber());
-                stepMap.put("completed", step.isCompleted());
-                stepMap.put("audioText", step.getAudioText());
-                stepsMapList.add(stepMap);
-            }
-            activity.put("steps", stepsMapList);
-            
             System.out.println("GUARDAR: Agregando " + customStepsList.size() + " pasos personalizados a Firebase");
         } else {
-            activity.put("isSequence", false);
-            activity.put("totalSteps", 0);
             System.out.println("GUARDAR: Sin pasos personalizados, se usará secuencia automática");
         }
 
@@ -410,12 +402,15 @@ public class CreateRoutineActivity extends AppCompatActivity implements TextToSp
         if (isEditMode && editingActivityId != null) {
             // Modo edición - actualizar actividad existente
             activityId = editingActivityId;
-            activity.put("id", activityId);
+            definition.setId(activityId);
+            Map<String, Object> activity = SnapshotCodec.writeActivityDefinition(definition, customStepsList.size());
             activity.put("updatedAt", System.currentTimeMillis());
             saveActivityButton.setText("Actualizando...");
             
-            databaseReference.child("activities").child(activityId)
-                    .updateChildren(activity)
+            String userId = firebaseAuth.getCurrentUser().getUid();
+            ActivityStepsStore.getInstance(this).saveLocalCopy(userId, activityId, customStepsList);
+            SyncOutbox.getInstance(this).updateChildren(userId, ActivityStepsStore.buildSaveUpdates(
+                    userId, activityId, activity, customStepsList, false))
                     .addOnSuccessListener(aVoid -> {
                         speakText("Actividad actualizada exitosamente");
                         showToast("¡Actividad actualizada!");
@@ -464,13 +459,17 @@ public class CreateRoutineActivity extends AppCompatActivity implements TextToSp
                     });
         } else {
             // Modo creación - crear nueva actividad
-            activityId = databaseReference.child("activities").push().getKey();
+            activityId = databaseReference.child(DatabasePaths.activities(firebaseAuth.getCurrentUser().getUid()))
+                    .push().getKey();
             if (activityId != null) {
-                activity.put("id", activityId);
+                definition.setId(activityId);
+                Map<String, Object> activity = SnapshotCodec.writeActivityDefinition(definition, customStepsList.size());
                 saveActivityButton.setText("Guardando...");
                 
-                databaseReference.child("activities").child(activityId)
-                        .setValue(activity)
+                String userId = firebaseAuth.getCurrentUser().getUid();
+                ActivityStepsStore.getInstance(this).saveLocalCopy(userId, activityId, customStepsList);
+                SyncOutbox.getInstance(this).updateChildren(userId, ActivityStepsStore.buildSaveUpdates(
+                        userId, activityId, activity, customStepsList, true))
                         .addOnSuccessListener(aVoid -> {
                             System.out.println("GUARDAR: Actividad guardada en Firebase exitosamente");
                             speakText("Actividad guardada exitosamente. Recordatorio programado");
@@ -578,112 +577,39 @@ public class CreateRoutineActivity extends AppCompatActivity implements TextToSp
     }
     
     private void loadExistingSteps() {
-        if (editingActivityId != null) {
+        if (editingActivityId != null && firebaseAuth.getCurrentUser() != null) {
             System.out.println("EDIT: Cargando pasos existentes para actividad: " + editingActivityId);
             
-            databaseReference.child("activities").child(editingActivityId)
-                .get()
-                .addOnSuccessListener(dataSnapshot -> {
-                    try {
-                        if (dataSnapshot.exists()) {
-                            // Verificar si tiene pasos personalizados
-                            Boolean isSequence = dataSnapshot.child("isSequence").getValue(Boolean.class);
-                            Object stepsData = dataSnapshot.child("steps").getValue();
-                            
-                            System.out.println("EDIT: isSequence = " + isSequence);
-                            System.out.println("EDIT: stepsData = " + (stepsData != null ? "existe" : "null"));
-                            
-                            if (isSequence != null && isSequence && stepsData != null) {
-                                // Cargar pasos personalizados
-                                loadStepsFromFirebase(stepsData);
-                            } else {
-                                System.out.println("EDIT: No hay pasos personalizados, actividad usa secuencia automática");
-                            }
-                        } else {
-                            System.out.println("EDIT: Actividad no encontrada en Firebase");
-                        }
-                    } catch (Exception e) {
-                        System.out.println("EDIT: Error al procesar datos de actividad: " + e.getMessage());
+            // Lee userActivitySteps o, si la actividad aún no se migró, el formato anterior
+            ActivityStepsStore.getInstance(this).loadSteps(firebaseAuth.getCurrentUser().getUid(),
+                    editingActivityId, new ActivityStepsStore.StepsCallback() {
+                @Override
+                public void onStepsLoaded(List<SequenceStep> steps) {
+                    if (steps.isEmpty()) {
+                        System.out.println("EDIT: No hay pasos personalizados, actividad usa secuencia automática");
+                        return;
                     }
-                })
-                .addOnFailureListener(e -> {
-                    System.out.println("EDIT: Error al cargar actividad desde Firebase: " + e.getMessage());
-                    showToast("Error al cargar datos de la actividad");
-                });
-        }
-    }
-    
-    private void loadStepsFromFirebase(Object stepsData) {
-        try {
-            customStepsList.clear();
-            
-            if (stepsData instanceof List) {
-                List<?> stepsList = (List<?>) stepsData;
-                
-                for (Object stepObj : stepsList) {
-                    if (stepObj instanceof Map) {
-                        Map<?, ?> stepMap = (Map<?, ?>) stepObj;
-                        
-                        SequenceStep step = new SequenceStep();
-                        step.setId(getString(stepMap, "id"));
-                        step.setName(getString(stepMap, "name"));
-                        step.setDescription(getString(stepMap, "description"));
-                        step.setPictogramId((int) getLong(stepMap, "pictogramId"));
-                        step.setPictogramKeyword(getString(stepMap, "pictogramKeyword"));
-                        step.setStepNumber(getInt(stepMap, "stepNumber"));
-                        step.setCompleted(getBoolean(stepMap, "completed"));
-                        step.setAudioText(getString(stepMap, "audioText"));
-                        
-                        customStepsList.add(step);
+                    
+                    customStepsList.clear();
+                    customStepsList.addAll(steps);
+                    
+                    // Actualizar adapter
+                    if (stepAdapter != null) {
+                        stepAdapter.notifyDataSetChanged();
                     }
+                    
+                    System.out.println("EDIT: Cargados " + customStepsList.size() + " pasos personalizados");
+                    showToast("✅ Pasos cargados: " + customStepsList.size());
                 }
                 
-                // Ordenar por número de paso
-                customStepsList.sort((s1, s2) -> Integer.compare(s1.getStepNumber(), s2.getStepNumber()));
-                
-                // Actualizar adapter
-                if (stepAdapter != null) {
-                    stepAdapter.notifyDataSetChanged();
+                @Override
+                public void onStepsError(String error) {
+                    System.out.println("EDIT: Error al cargar pasos desde Firebase: " + error);
+                    showToast("Error al cargar pasos");
                 }
-                
-                System.out.println("EDIT: Cargados " + customStepsList.size() + " pasos personalizados");
-                showToast("✅ Pasos cargados: " + customStepsList.size());
-            }
-        } catch (Exception e) {
-            System.out.println("EDIT: Error al convertir pasos desde Firebase: " + e.getMessage());
-            showToast("Error al cargar pasos");
+            });
         }
     }
-    
-    // Métodos auxiliares para extraer datos de Map de forma segura
-    private String getString(Map<?, ?> map, String key) {
-        Object value = map.get(key);
-        return value != null ? value.toString() : "";
-    }
-    
-    private long getLong(Map<?, ?> map, String key) {
-        Object value = map.get(key);
-        if (value instanceof Number) {
-            return ((Number) value).longValue();
-        }
-        return 0;
-    }
-    
-    private int getInt(Map<?, ?> map, String key) {
-        Object value = map.get(key);
-        if (value instanceof Number) {
-            return ((Number) value).intValue();
-        }
-        return 0;
-    }
-    
-    private boolean getBoolean(Map<?, ?> map, String key) {
-        Object value = map.get(key);
-        if (value instanceof Boolean) {
-            return (Boolean) value;
-        }
-        return false;
-    }
 
     @Override
     public void onInit(int status) {
@@ -876,6 +802,9 @@ public class CreateRoutineActivity extends AppCompatActivity implements TextToSp
 
     @Override
     protected void onDestroy() {
+        if (searchDebouncer != null) {
+            searchDebouncer.cancel();
+        }
         if (textToSpeech != null) {
             textToSpeech.stop();
             textToSpeech.shutdown();
@@ -0,0 +1,72 @@
+package com.example.mirutinavisual;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+// Configuración de Firebase Realtime Database al arrancar el proceso (MiRutinaApplication).
+// setPersistenceEnabled tiene que ir antes de cualquier otro uso de FirebaseDatabase:
+// con ella la caché y las escrituras pendientes sobreviven a que se cierre la app.
+public final class DatabaseBootstrap {
+
+    // Por defecto son 10 MB. Cabeceras, pasos, registro por días y contadores de un niño
+    // ocupan poco, pero el tutor puede tener varias cuentas en el mismo teléfono y al
+    // llenarse la caché Firebase descarta lo menos usado y vuelve a descargarlo
+    static final long PERSISTENCE_CACHE_BYTES = 20L * 1024 * 1024;
+
+    private static boolean initialized = false;
+    private static boolean persistenceEnabled = false;
+    // Usuario con keepSynced activo (null si nadie ha iniciado sesión)
+    private static String syncedUserId;
+
+    private DatabaseBootstrap() {
+    }
+
+    public static synchronized void initialize() {
+        if (initialized) return;
+        initialized = true;
+
+        FirebaseDatabase database = FirebaseDatabase.getInstance();
+        try {
+            database.setPersistenceCacheSizeBytes(PERSISTENCE_CACHE_BYTES);
+            database.setPersistenceEnabled(true);
+            persistenceEnabled = true;
+            System.out.println("DB_BOOTSTRAP: Persistencia activada (" + PERSISTENCE_CACHE_BYTES / (1024 * 1024) + " MB)");
+        } catch (Exception e) {
+            // Alguien usó FirebaseDatabase antes: la app sigue, solo sin caché en disco
+            System.out.println("DB_BOOTSTRAP: No se pudo activar la persistencia: " + e.getMessage());
+        }
+
+        // Lo que cada pantalla lee al abrir se mantiene al día aunque no haya listeners
+        FirebaseAuth.getInstance().addAuthStateListener(auth -> {
+            FirebaseUser user = auth.getCurrentUser();
+            updateSyncedUser(user != null ? user.getUid() : null);
+        });
+    }
+
+    // SyncOutbox: con persistencia Firebase ya guarda y reenvía las escrituras pendientes
+    public static synchronized boolean isPersistenceEnabled() {
+        return persistenceEnabled;
+    }
+
+    private static synchronized void updateSyncedUser(String userId) {
+        if (userId == null ? syncedUserId == null : userId.equals(syncedUserId)) return;
+
+        if (syncedUserId != null) {
+            setKeepSynced(syncedUserId, false);
+        }
+        syncedUserId = userId;
+        if (userId != null) {
+            setKeepSynced(userId, true);
+        }
+    }
+
+    private static void setKeepSynced(String userId, boolean keepSynced) {
+        DatabaseReference root = FirebaseDatabase.getInstance().getReference();
+        root.child(DatabasePaths.activities(userId)).keepSynced(keepSynced);
+        root.child("userStats").child(userId).keepSynced(keepSynced);
+        root.child("userAchievements").child(userId).keepSynced(keepSynced);
+        System.out.println("DB_BOOTSTRAP: keepSynced=" + keepSynced + " para " + userId);
+    }
+}
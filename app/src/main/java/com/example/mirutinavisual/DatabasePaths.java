@@ -0,0 +1,60 @@
+package com.example.mirutinavisual;
+
+// Rutas de Realtime Database. Las actividades están particionadas por usuario
+// (userActivities/<uid>/<id>): leer las de un usuario no depende de cuántas familias
+// usen la app. Las reglas e índices están en database.rules.json, en la raíz del proyecto.
+public final class DatabasePaths {
+
+    public static final String USER_ACTIVITIES = "userActivities";
+    public static final String USER_ACTIVITY_STEPS = "userActivitySteps";
+    // Registro de completadas por día (CompletionLog)
+    public static final String COMPLETIONS = "completions";
+    // Contadores por día, semana y mes (CompletionRollups)
+    public static final String ROLLUPS = "rollups";
+    // Marcas por usuario (p. ej. migración ya hecha)
+    public static final String USER_META = "userMeta";
+
+    // Formato anterior: nodo global filtrado con orderByChild("userId"). Solo para migrar
+    public static final String LEGACY_ACTIVITIES = "activities";
+    public static final String LEGACY_ACTIVITY_STEPS = "activitySteps";
+
+    private DatabasePaths() {
+    }
+
+    public static String activities(String userId) {
+        return USER_ACTIVITIES + "/" + userId;
+    }
+
+    public static String activity(String userId, String activityId) {
+        return activities(userId) + "/" + activityId;
+    }
+
+    public static String activitySteps(String userId, String activityId) {
+        return USER_ACTIVITY_STEPS + "/" + userId + "/" + activityId;
+    }
+
+    public static String completions(String userId) {
+        return COMPLETIONS + "/" + userId;
+    }
+
+    public static String rollups(String userId) {
+        return ROLLUPS + "/" + userId;
+    }
+
+    public static String activitiesMigrated(String userId) {
+        return USER_META + "/" + userId + "/activitiesMigrated";
+    }
+
+    // Escritura de control de SyncOutbox: su confirmación llega detrás de las anteriores
+    public static String outboxBarrier(String userId) {
+        return USER_META + "/" + userId + "/outboxSyncedAt";
+    }
+
+    public static String legacyActivity(String activityId) {
+        return LEGACY_ACTIVITIES + "/" + activityId;
+    }
+
+    public static String legacyActivitySteps(String activityId) {
+        return LEGACY_ACTIVITY_STEPS + "/" + activityId;
+    }
+}
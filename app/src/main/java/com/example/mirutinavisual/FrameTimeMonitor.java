@@ -0,0 +1,110 @@
+package com.example.mirutinavisual;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.Display;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+// Tiempos de frame de una pantalla (FrameMetrics) mientras está visible: al parar se
+// escribe un resumen en el log y los percentiles van a PerformanceMetrics.
+// start/stop desde el hilo principal (onStart/onStop).
+public class FrameTimeMonitor {
+
+    // Histograma por milisegundo: sin asignar memoria por frame
+    private static final int MAX_BUCKET_MS = 200;
+
+    private static HandlerThread metricsThread;
+
+    private final String name;
+    private final int[] histogram = new int[MAX_BUCKET_MS + 1];
+    private Window window;
+    private Window.OnFrameMetricsAvailableListener listener;
+    // Hilo de métricas
+    private long frameBudgetNs;
+    private int frames;
+    private int jankyFrames;
+
+    public FrameTimeMonitor(String name) {
+        this.name = name;
+    }
+
+    public void start(Activity activity) {
+        if (listener != null) return;
+
+        float refreshRate = getRefreshRate(activity);
+        long budgetNs = (long) (1_000_000_000L / (refreshRate > 0 ? refreshRate : 60f));
+
+        window = activity.getWindow();
+        listener = (frameWindow, frameMetrics, dropCountSinceLastInvocation) -> {
+            frameBudgetNs = budgetNs;
+            long totalNs = frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION);
+            histogram[(int) Math.min(MAX_BUCKET_MS, totalNs / 1_000_000)]++;
+            frames++;
+            if (totalNs > frameBudgetNs) {
+                jankyFrames++;
+            }
+        };
+        window.addOnFrameMetricsAvailableListener(listener, new Handler(getMetricsThread().getLooper()));
+    }
+
+    public void stop() {
+        if (listener == null) return;
+
+        window.removeOnFrameMetricsAvailableListener(listener);
+        listener = null;
+        window = null;
+        // El resumen se lee en el mismo hilo que escribe el listener
+        new Handler(getMetricsThread().getLooper()).post(this::report);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static float getRefreshRate(Activity activity) {
+        // La pantalla en la que está la ventana (multipantalla); getDefaultDisplay() antes de API 30
+        Display display = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? activity.getDisplay()
+                : activity.getWindowManager().getDefaultDisplay();
+        return display != null ? display.getRefreshRate() : 0f;
+    }
+
+    private void report() {
+        if (frames == 0) return;
+
+        int p50 = percentile(50);
+        int p90 = percentile(90);
+        int p99 = percentile(99);
+        System.out.println(String.format(Locale.ROOT,
+                "FRAMES: %s n=%d lentos=%d (%.1f%%, presupuesto %.1f ms) p50=%d p90=%d p99=%d ms",
+                name, frames, jankyFrames, 100.0 * jankyFrames / frames, frameBudgetNs / 1_000_000.0,
+                p50, p90, p99));
+        PerformanceMetrics.record(name + "_frame_p90", p90);
+        PerformanceMetrics.record(name + "_frame_p99", p99);
+
+        Arrays.fill(histogram, 0);
+        frames = 0;
+        jankyFrames = 0;
+    }
+
+    private int percentile(int percent) {
+        int target = (int) Math.ceil(frames * percent / 100.0);
+        int seen = 0;
+        for (int ms = 0; ms <= MAX_BUCKET_MS; ms++) {
+            seen += histogram[ms];
+            if (seen >= target) return ms;
+        }
+        return MAX_BUCKET_MS;
+    }
+
+    private static synchronized HandlerThread getMetricsThread() {
+        if (metricsThread == null) {
+            metricsThread = new HandlerThread("FrameTimeMonitor");
+            metricsThread.start();
+        }
+        return metricsThread;
+    }
+}
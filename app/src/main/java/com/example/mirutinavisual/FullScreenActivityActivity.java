@@ -12,16 +12,13 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.bumptech.glide.Glide;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-
+import java.util.List;
 import java.util.Locale;
 
 public class FullScreenActivityActivity extends AppCompatActivity implements TextToSpeech.OnInitListener {
 
     private TextToSpeech textToSpeech;
-    private DatabaseReference databaseReference;
+    private AchievementManager achievementManager;
     
     private ImageView activityImageView;
     private TextView activityNameText, instructionText;
@@ -40,8 +37,8 @@ public class FullScreenActivityActivity extends AppCompatActivity implements Tex
         
         setContentView(R.layout.activity_fullscreen_activity);
         
-        // Inicializar Firebase
-        databaseReference = FirebaseDatabase.getInstance().getReference();
+        // Sistema de logros: lee ya los logros desbloqueados para no esperarlos al completar
+        achievementManager = new AchievementManager(this);
         
         // Inicializar Text-to-Speech
         textToSpeech = new TextToSpeech(this, this);
@@ -145,16 +142,9 @@ public class FullScreenActivityActivity extends AppCompatActivity implements Tex
         instructionText.setText("¡Es hora de realizar esta actividad!");
         
         // Cargar pictograma
-        if (pictogramId > 0) {
-            String pictogramUrl = "https://api.arasaac.org/api/pictograms/" + pictogramId + "?download=false";
-            Glide.with(this)
-                    .load(pictogramUrl)
-                    .placeholder(R.drawable.ic_image_placeholder)
-                    .error(R.drawable.ic_image_error)
-                    .into(activityImageView);
-        } else {
-            activityImageView.setImageResource(R.drawable.ic_image_placeholder);
-        }
+        // Pantalla completa: variante grande
+        PictogramImageLoader.load(activityImageView, pictogramId, PictogramSize.FULL,
+                R.drawable.ic_image_placeholder, R.drawable.ic_image_error);
         
         // Mensaje de voz automático después de 1 segundo
         activityImageView.postDelayed(() -> {
@@ -164,15 +154,20 @@ public class FullScreenActivityActivity extends AppCompatActivity implements Tex
 
     private void markAsCompleted() {
         if (!activityId.equals("unknown")) {
-            databaseReference.child("activities").child(activityId)
-                    .child("completed").setValue(true)
-                    .addOnSuccessListener(aVoid -> {
-                        showToast("¡Actividad completada! 🎉");
-                        goToTodayRoutine();
-                    })
-                    .addOnFailureListener(e -> {
-                        showToast("Error al marcar como completada");
-                    });
+            // Actividad al outbox local al momento; estadísticas en transacción y después los logros
+            achievementManager.commitActivityCompletion(activityId,
+                    new AchievementManager.OnCompletionCommittedListener() {
+                @Override
+                public void onCompletionCommitted(List<Achievement> newAchievements) {
+                    showToast("¡Actividad completada! 🎉");
+                    goToTodayRoutine();
+                }
+
+                @Override
+                public void onCompletionFailed(String error) {
+                    showToast("Error al marcar como completada");
+                }
+            });
         } else {
             showToast("¡Muy bien! Actividad completada 🎉");
             goToTodayRoutine();
@@ -0,0 +1,318 @@
+package com.example.mirutinavisual;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.ToNumberPolicy;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Copia local (SQLite) de lo que el niño necesita sin conexión: cabeceras de actividades,
+// pasos, estadísticas y logros desbloqueados. Las pantallas pintan primero desde aquí y
+// Firebase la va poniendo al día. Todo el acceso a disco va en un único hilo;
+// los resultados se entregan en el hilo principal. Los modelos se guardan con el mismo
+// formato que en Firebase (SnapshotCodec); Gson solo convierte esos Map a JSON.
+public class LocalRoutineStore {
+
+    private static final String DATABASE_NAME = "routine_mirror.db";
+    private static final int DATABASE_VERSION = 2;
+
+    private static final String USER_STATS = "userStats";
+    private static final String UNLOCKED_ACHIEVEMENTS = "unlockedAchievements";
+    private static final String PENDING_STATS = "pendingStatsCompletions";
+    // Posición del paso en Firebase, necesaria para escribir su progreso
+    private static final String STORAGE_INDEX = "storageIndex";
+
+    private static volatile LocalRoutineStore instance;
+
+    private final DbHelper dbHelper;
+    // Números como Long o Double, igual que getValue() en Firebase
+    private final Gson gson = new GsonBuilder()
+            .setObjectToNumberStrategy(ToNumberPolicy.LONG_OR_DOUBLE)
+            .create();
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public interface LoadCallback<T> {
+        // null si no hay copia local
+        void onLoaded(T value);
+    }
+
+    public static LocalRoutineStore getInstance(Context context) {
+        if (instance == null) {
+            synchronized (LocalRoutineStore.class) {
+                if (instance == null) {
+                    instance = new LocalRoutineStore(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private LocalRoutineStore(Context appContext) {
+        this.dbHelper = new DbHelper(appContext);
+    }
+
+    // --- Actividades (solo cabeceras, en el orden de Firebase) ---
+
+    public void loadActivities(String userId, LoadCallback<List<Activity>> callback) {
+        diskExecutor.execute(() -> {
+            List<Activity> activities = null;
+            try (Cursor cursor = dbHelper.getReadableDatabase().query("activities", new String[]{"activity_id", "data"},
+                    "user_id = ?", new String[]{userId}, null, null, "position")) {
+                if (cursor.getCount() > 0) {
+                    activities = new ArrayList<>(cursor.getCount());
+                    while (cursor.moveToNext()) {
+                        Activity activity = SnapshotCodec.readActivity(cursor.getString(0),
+                                gson.fromJson(cursor.getString(1), Object.class));
+                        if (activity != null) {
+                            activities.add(activity);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                System.out.println("LOCAL_STORE: Error al leer actividades: " + e.getMessage());
+            }
+            deliver(activities, callback);
+        });
+    }
+
+    public void saveActivities(String userId, List<Activity> activities) {
+        List<String> rows = new ArrayList<>(activities.size());
+        List<String> ids = new ArrayList<>(activities.size());
+        for (Activity activity : activities) {
+            rows.add(gson.toJson(SnapshotCodec.writeActivityHeader(activity)));
+            ids.add(activity.getId());
+        }
+
+        // Cada publish trae la lista entera pero suele cambiar una cabecera (un paso hecho):
+        // solo se escriben las filas cuyo contenido o posición cambió y se borran las que faltan
+        diskExecutor.execute(() -> {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                Map<String, String> stored = new HashMap<>();
+                try (Cursor cursor = db.query("activities", new String[]{"activity_id", "position", "data"},
+                        "user_id = ?", new String[]{userId}, null, null, null)) {
+                    while (cursor.moveToNext()) {
+                        stored.put(cursor.getString(0), cursor.getInt(1) + ":" + cursor.getString(2));
+                    }
+                }
+                int written = 0;
+                for (int i = 0; i < rows.size(); i++) {
+                    String previous = stored.remove(ids.get(i));
+                    if ((i + ":" + rows.get(i)).equals(previous)) continue;
+                    ContentValues values = new ContentValues();
+                    values.put("user_id", userId);
+                    values.put("activity_id", ids.get(i));
+                    values.put("position", i);
+                    values.put("data", rows.get(i));
+                    db.insertWithOnConflict("activities", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                    written++;
+                }
+                // Lo que queda en stored ya no existe: cabecera y pasos
+                for (String removedId : stored.keySet()) {
+                    String[] args = {userId, removedId};
+                    db.delete("activities", "user_id = ? AND activity_id = ?", args);
+                    db.delete("activity_steps", "user_id = ? AND activity_id = ?", args);
+                }
+                if (written > 0 || !stored.isEmpty()) {
+                    System.out.println("LOCAL_STORE: " + written + " actividades actualizadas, " + stored.size() + " borradas");
+                }
+                db.setTransactionSuccessful();
+            } catch (Exception e) {
+                System.out.println("LOCAL_STORE: Error al guardar actividades: " + e.getMessage());
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    // --- Pasos de una secuencia ---
+
+    public void loadSteps(String userId, String activityId, LoadCallback<List<SequenceStep>> callback) {
+        diskExecutor.execute(() -> {
+            String json = readValue("activity_steps", "activity_id", userId, activityId);
+            deliver(json != null ? readSteps(gson.fromJson(json, Object.class)) : null, callback);
+        });
+    }
+
+    public void saveSteps(String userId, String activityId, List<SequenceStep> steps) {
+        List<Map<String, Object>> stored = new ArrayList<>(steps.size());
+        for (SequenceStep step : steps) {
+            Map<String, Object> map = SnapshotCodec.writeStep(step);
+            map.put(STORAGE_INDEX, step.getStorageIndex());
+            stored.add(map);
+        }
+        String json = gson.toJson(stored);
+        diskExecutor.execute(() -> writeValue("activity_steps", "activity_id", userId, activityId, json));
+    }
+
+    // --- Estadísticas y logros ---
+
+    public void loadUserStats(String userId, LoadCallback<UserStats> callback) {
+        diskExecutor.execute(() -> {
+            String json = readValue("user_data", "name", userId, USER_STATS);
+            deliver(json != null ? SnapshotCodec.readUserStats(gson.fromJson(json, Object.class)) : null, callback);
+        });
+    }
+
+    public void saveUserStats(String userId, UserStats stats) {
+        String json = gson.toJson(SnapshotCodec.writeUserStats(stats));
+        diskExecutor.execute(() -> writeValue("user_data", "name", userId, USER_STATS, json));
+    }
+
+    public void loadUnlockedAchievements(String userId, LoadCallback<Set<String>> callback) {
+        diskExecutor.execute(() -> {
+            String json = readValue("user_data", "name", userId, UNLOCKED_ACHIEVEMENTS);
+            Type type = new TypeToken<Set<String>>() {}.getType();
+            deliver(json != null ? gson.fromJson(json, type) : null, callback);
+        });
+    }
+
+    public void saveUnlockedAchievements(String userId, Collection<String> achievementIds) {
+        String json = gson.toJson(new HashSet<>(achievementIds));
+        diskExecutor.execute(() -> writeValue("user_data", "name", userId, UNLOCKED_ACHIEVEMENTS, json));
+    }
+
+    // Completadas (completedAt) cuya transacción de userStats no se ha confirmado todavía.
+    // Firebase no guarda las transacciones al cerrar la app: se repiten en el siguiente arranque
+    public void loadPendingStatsCompletions(String userId, LoadCallback<List<Long>> callback) {
+        diskExecutor.execute(() -> deliver(readPendingStats(userId), callback));
+    }
+
+    public void addPendingStatsCompletion(String userId, long completedAt) {
+        diskExecutor.execute(() -> {
+            List<Long> pending = readPendingStats(userId);
+            pending.add(completedAt);
+            writeValue("user_data", "name", userId, PENDING_STATS, gson.toJson(pending));
+        });
+    }
+
+    public void removePendingStatsCompletion(String userId, long completedAt) {
+        diskExecutor.execute(() -> {
+            List<Long> pending = readPendingStats(userId);
+            if (pending.remove(Long.valueOf(completedAt))) {
+                writeValue("user_data", "name", userId, PENDING_STATS, gson.toJson(pending));
+            }
+        });
+    }
+
+    private List<Long> readPendingStats(String userId) {
+        String json = readValue("user_data", "name", userId, PENDING_STATS);
+        Type type = new TypeToken<List<Long>>() {}.getType();
+        List<Long> pending = json != null ? gson.fromJson(json, type) : null;
+        return pending != null ? pending : new ArrayList<>();
+    }
+
+    // --- Acceso para SyncOutbox (mismo hilo de disco) ---
+
+    void runOnDiskThread(Runnable task) {
+        diskExecutor.execute(task);
+    }
+
+    SQLiteDatabase getDatabase() {
+        return dbHelper.getWritableDatabase();
+    }
+
+    // Se guardan ya ordenados por número de paso
+    private static List<SequenceStep> readSteps(Object value) {
+        List<SequenceStep> steps = new ArrayList<>();
+        if (!(value instanceof List)) return steps;
+
+        for (Object stepValue : (List<?>) value) {
+            if (!(stepValue instanceof Map)) continue;
+            Object storageIndex = ((Map<?, ?>) stepValue).get(STORAGE_INDEX);
+            steps.add(SnapshotCodec.readStep((Map<?, ?>) stepValue,
+                    storageIndex instanceof Number ? ((Number) storageIndex).intValue() : -1));
+        }
+        return steps;
+    }
+
+    private String readValue(String table, String keyColumn, String userId, String key) {
+        try (Cursor cursor = dbHelper.getReadableDatabase().query(table, new String[]{"data"},
+                "user_id = ? AND " + keyColumn + " = ?", new String[]{userId, key}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } catch (Exception e) {
+            System.out.println("LOCAL_STORE: Error al leer " + table + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeValue(String table, String keyColumn, String userId, String key, String json) {
+        try {
+            ContentValues values = new ContentValues();
+            values.put("user_id", userId);
+            values.put(keyColumn, key);
+            values.put("data", json);
+            dbHelper.getWritableDatabase().insertWithOnConflict(table, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        } catch (Exception e) {
+            System.out.println("LOCAL_STORE: Error al guardar " + table + ": " + e.getMessage());
+        }
+    }
+
+    private <T> void deliver(T value, LoadCallback<T> callback) {
+        mainHandler.post(() -> callback.onLoaded(value));
+    }
+
+    private static class DbHelper extends SQLiteOpenHelper {
+
+        DbHelper(Context context) {
+            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            createMirrorTables(db);
+            createOutbox(db);
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            // La copia se reconstruye desde Firebase; el outbox no se toca para no perder escrituras
+            db.execSQL("DROP TABLE IF EXISTS activities");
+            db.execSQL("DROP TABLE IF EXISTS activity_steps");
+            db.execSQL("DROP TABLE IF EXISTS user_data");
+            createMirrorTables(db);
+            if (oldVersion < 2) {
+                // En la versión 1 todas las filas se guardaban con la persistencia de Firebase activa
+                db.execSQL("ALTER TABLE outbox ADD COLUMN persisted INTEGER NOT NULL DEFAULT 1");
+            }
+            createOutbox(db);
+        }
+
+        private static void createMirrorTables(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE activities (user_id TEXT NOT NULL, activity_id TEXT NOT NULL, "
+                    + "position INTEGER NOT NULL, data TEXT NOT NULL, PRIMARY KEY (user_id, activity_id))");
+            db.execSQL("CREATE TABLE activity_steps (user_id TEXT NOT NULL, activity_id TEXT NOT NULL, "
+                    + "data TEXT NOT NULL, PRIMARY KEY (user_id, activity_id))");
+            db.execSQL("CREATE TABLE user_data (user_id TEXT NOT NULL, name TEXT NOT NULL, "
+                    + "data TEXT NOT NULL, PRIMARY KEY (user_id, name))");
+        }
+
+        // Escrituras pendientes de confirmar por Firebase, en orden (SyncOutbox).
+        // persisted: la persistencia de Firebase estaba activa al escribirla
+        private static void createOutbox(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS outbox (id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "user_id TEXT NOT NULL, updates TEXT NOT NULL, created_at INTEGER NOT NULL, "
+                    + "persisted INTEGER NOT NULL DEFAULT 0)");
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.example.mirutinavisual;
 
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.speech.tts.TextToSpeech;
 import android.text.InputType;
@@ -212,6 +213,25 @@ public class MainActivity extends AppCompatActivity implements TextToSpeech.OnIn
             welcomeText.setText("¡Hola!");
             userNameText.setText("Configura tu perfil");
         }
+
+        loadProfileImage();
+    }
+
+    private void loadProfileImage() {
+        String userId = getCurrentUserId();
+        ProfileImageStore profileImageStore = ProfileImageStore.getInstance(this);
+        Bitmap cached = profileImageStore.getCached(userId);
+        if (cached != null) {
+            profileImage.setImageBitmap(cached);
+            return;
+        }
+
+        // Decodificación en segundo plano; mientras tanto queda el ícono del layout
+        profileImageStore.load(userId, bitmap -> {
+            if (bitmap != null && !isFinishing()) {
+                profileImage.setImageBitmap(bitmap);
+            }
+        });
     }
 
     @Override
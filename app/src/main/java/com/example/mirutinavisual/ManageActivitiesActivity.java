@@ -15,16 +15,14 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 public class ManageActivitiesActivity extends AppCompatActivity implements TextToSpeech.OnInitListener {
 
@@ -40,6 +38,8 @@ public class ManageActivitiesActivity extends AppCompatActivity implements TextT
     
     private ManageActivityAdapter activityAdapter;
     private List<Activity> activitiesList;
+    
+    private final FrameTimeMonitor frameTimeMonitor = new FrameTimeMonitor("manage_activities");
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -177,63 +177,53 @@ public class ManageActivitiesActivity extends AppCompatActivity implements TextT
 
             String userId = firebaseAuth.getCurrentUser().getUid();
             
-            databaseReference.child("activities")
-                    .orderByChild("userId")
-                    .equalTo(userId)
-                    .addValueEventListener(new ValueEventListener() {
-                        @Override
-                        public void onDataChange(DataSnapshot dataSnapshot) {
-                            try {
-                                activitiesList.clear();
-                                
-                                for (DataSnapshot activitySnapshot : dataSnapshot.getChildren()) {
-                                    Activity activity = activitySnapshot.getValue(Activity.class);
-                                    if (activity != null) {
-                                        activity.setId(activitySnapshot.getKey());
-                                        activitiesList.add(activity);
-                                    }
-                                }
-                                
-                                // Ordenar por hora
-                                Collections.sort(activitiesList, (a1, a2) -> a1.getTime().compareTo(a2.getTime()));
-                                
-                                // Actualizar UI
-                                if (activityAdapter != null) {
-                                    activityAdapter.notifyDataSetChanged();
-                                }
-                                
-                                if (loadingProgressBar != null) {
-                                    loadingProgressBar.setVisibility(View.GONE);
-                                }
-                                
-                                if (activitiesList.isEmpty()) {
-                                    if (emptyStateText != null) {
-                                        emptyStateText.setVisibility(View.VISIBLE);
-                                    }
-                                    speakText("No hay rutinas creadas");
-                                } else {
-                                    if (emptyStateText != null) {
-                                        emptyStateText.setVisibility(View.GONE);
-                                    }
-                                    speakText("Se cargaron " + activitiesList.size() + " rutinas");
-                                }
-                                
-                            } catch (Exception e) {
-                                showToast("Error al mostrar rutinas: " + e.getMessage());
-                            }
+            // Listener compartido con las demás pantallas; se suelta solo en onDestroy.
+            // La lista llega ya ordenada por hora desde el hilo del repositorio
+            ActivityRepository.getInstance(this).observe(this, userId, ActivityRepository.SORTED_BY_TIME,
+                    new ActivityRepository.ActivitiesObserver() {
+                @Override
+                public void onActivitiesChanged(List<Activity> activities) {
+                    try {
+                        activitiesList.clear();
+                        activitiesList.addAll(activities);
+                        
+                        // Actualizar UI
+                        if (activityAdapter != null) {
+                            activityAdapter.notifyDataSetChanged();
                         }
-
-                        @Override
-                        public void onCancelled(DatabaseError databaseError) {
-                            if (loadingProgressBar != null) {
-                                loadingProgressBar.setVisibility(View.GONE);
-                            }
+                        
+                        if (loadingProgressBar != null) {
+                            loadingProgressBar.setVisibility(View.GONE);
+                        }
+                        
+                        if (activitiesList.isEmpty()) {
                             if (emptyStateText != null) {
                                 emptyStateText.setVisibility(View.VISIBLE);
                             }
-                            showToast("Error al cargar rutinas: " + databaseError.getMessage());
+                            speakText("No hay rutinas creadas");
+                        } else {
+                            if (emptyStateText != null) {
+                                emptyStateText.setVisibility(View.GONE);
+                            }
+                            speakText("Se cargaron " + activitiesList.size() + " rutinas");
                         }
-                    });
+                        
+                    } catch (Exception e) {
+                        showToast("Error al mostrar rutinas: " + e.getMessage());
+                    }
+                }
+
+                @Override
+                public void onError(String error) {
+                    if (loadingProgressBar != null) {
+                        loadingProgressBar.setVisibility(View.GONE);
+                    }
+                    if (emptyStateText != null) {
+                        emptyStateText.setVisibility(View.VISIBLE);
+                    }
+                    showToast("Error al cargar rutinas: " + error);
+                }
+            });
                     
         } catch (Exception e) {
             showToast("Error: " + e.getMessage());
@@ -268,10 +258,12 @@ public class ManageActivitiesActivity extends AppCompatActivity implements TextT
     }
 
     private void deleteActivity(Activity activity) {
-        if (activity.getId() == null) return;
+        if (activity.getId() == null || firebaseAuth.getCurrentUser() == null) return;
         
-        databaseReference.child("activities").child(activity.getId())
-                .removeValue()
+        // Cabecera y pasos a la vez
+        String userId = firebaseAuth.getCurrentUser().getUid();
+        SyncOutbox.getInstance(this).updateChildren(userId,
+                ActivityStepsStore.buildDeleteUpdates(userId, activity.getId()))
                 .addOnSuccessListener(aVoid -> {
                     speakText("Rutina eliminada: " + activity.getName());
                     showToast("Rutina eliminada correctamente");
@@ -287,12 +279,26 @@ public class ManageActivitiesActivity extends AppCompatActivity implements TextT
     }
 
     private void toggleActivityStatus(Activity activity) {
-        if (activity.getId() == null) return;
+        if (activity.getId() == null || firebaseAuth.getCurrentUser() == null) return;
         
         boolean newStatus = !activity.isCompleted();
+        String userId = firebaseAuth.getCurrentUser().getUid();
+        long now = System.currentTimeMillis();
         
-        databaseReference.child("activities").child(activity.getId())
-                .child("completed").setValue(newStatus)
+        // Marcar a mano también cuenta en el registro y contadores de hoy; desmarcar lo quita
+        CompletionLog.recordStatus(databaseReference, userId, activity.getId(), newStatus, now,
+                rollups -> SyncOutbox.getInstance(getApplicationContext()).updateChildren(userId, rollups));
+        ActivityRepository.resolveHeaderPaths(userId, activity.getId(), headerPaths -> {
+            Map<String, Object> updates = new HashMap<>();
+            for (String headerPath : headerPaths) {
+                updates.put(headerPath + "/completed", newStatus);
+            }
+            writeActivityStatus(userId, activity, newStatus, updates);
+        });
+    }
+    
+    private void writeActivityStatus(String userId, Activity activity, boolean newStatus, Map<String, Object> updates) {
+        SyncOutbox.getInstance(this).updateChildren(userId, updates)
                 .addOnSuccessListener(aVoid -> {
                     activity.setCompleted(newStatus);
                     String statusText = newStatus ? "completada" : "marcada como pendiente";
@@ -357,6 +363,18 @@ public class ManageActivitiesActivity extends AppCompatActivity implements TextT
         Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        frameTimeMonitor.start(this);
+    }
+    
+    @Override
+    protected void onStop() {
+        frameTimeMonitor.stop();
+        super.onStop();
+    }
+
     @Override
     protected void onDestroy() {
         if (textToSpeech != null) {
@@ -13,14 +13,15 @@ import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
-
 import java.util.List;
 
 public class ManageActivityAdapter extends RecyclerView.Adapter<ManageActivityAdapter.ManageActivityViewHolder> {
 
+    private static final int PRELOAD_AHEAD = 6;
+
     private List<Activity> activities;
     private OnActivityActionListener listener;
+    private PictogramPreloader preloader;
 
     public interface OnActivityActionListener {
         void onEditActivity(Activity activity);
@@ -51,11 +52,11 @@ public class ManageActivityAdapter extends RecyclerView.Adapter<ManageActivityAd
         holder.activityTimeText.setText(activity.getTime());
         
         // Cargar pictograma
-        Glide.with(holder.itemView.getContext())
-                .load(activity.getPictogramUrl())
-                .placeholder(R.drawable.ic_image_placeholder)
-                .error(R.drawable.ic_image_error)
-                .into(holder.pictogramImageView);
+        if (preloader != null) {
+            preloader.trackView(holder.pictogramImageView);
+        }
+        PictogramImageLoader.load(holder.pictogramImageView, activity.getPictogramId(),
+                PictogramSize.THUMBNAIL, R.drawable.ic_image_placeholder, R.drawable.ic_image_error);
         
         // Configurar switch de estado
         holder.statusSwitch.setChecked(activity.isCompleted());
@@ -107,6 +108,24 @@ public class ManageActivityAdapter extends RecyclerView.Adapter<ManageActivityAd
         });
     }
 
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        // Precargar las miniaturas de los próximos elementos mientras se hace scroll
+        // Mismo scaleType que la ImageView del layout del elemento
+        preloader = new PictogramPreloader(recyclerView, PictogramSize.THUMBNAIL, ImageView.ScaleType.CENTER_CROP, PRELOAD_AHEAD,
+                position -> position < activities.size() ? activities.get(position).getPictogramId() : 0);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        if (preloader != null) {
+            preloader.detach();
+            preloader = null;
+        }
+        super.onDetachedFromRecyclerView(recyclerView);
+    }
+
     @Override
     public int getItemCount() {
         return activities.size();
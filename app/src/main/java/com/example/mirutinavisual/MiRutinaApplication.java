@@ -0,0 +1,15 @@
+package com.example.mirutinavisual;
+
+import android.app.Application;
+
+public class MiRutinaApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Antes que cualquier pantalla toque Firebase
+        DatabaseBootstrap.initialize();
+        // Reenvía (o descarta, si Firebase ya las guarda) las escrituras de la sesión anterior
+        SyncOutbox.getInstance(this);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.mirutinavisual;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy;
+import com.bumptech.glide.module.AppGlideModule;
+import com.bumptech.glide.request.RequestOptions;
+
+// Configuración única de Glide para todos los pictogramas de la app
+@GlideModule
+public class MiRutinaGlideModule extends AppGlideModule {
+
+    private static final String DISK_CACHE_DIR = "pictogram_images";
+    private static final long DISK_CACHE_BYTES = 100L * 1024 * 1024; // 100 MB
+
+    // Tablets de gama baja: menos pantallas en memoria que los valores por defecto (2 y 4)
+    private static final float MEMORY_CACHE_SCREENS = 1.5f;
+    private static final float BITMAP_POOL_SCREENS = 2f;
+    private static final float MAX_HEAP_FRACTION = 0.3f;
+
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        MemorySizeCalculator calculator = new MemorySizeCalculator.Builder(context)
+                .setMemoryCacheScreens(MEMORY_CACHE_SCREENS)
+                .setBitmapPoolScreens(BITMAP_POOL_SCREENS)
+                .setMaxSizeMultiplier(MAX_HEAP_FRACTION)
+                .build();
+        builder.setMemoryCache(new LruResourceCache(calculator.getMemoryCacheSize()));
+        builder.setBitmapPool(new LruBitmapPool(calculator.getBitmapPoolSize()));
+
+        builder.setDiskCache(new InternalCacheDiskCacheFactory(context, DISK_CACHE_DIR, DISK_CACHE_BYTES));
+
+        builder.setDefaultRequestOptions(new RequestOptions()
+                // Decodificar al tamaño de la vista, nunca más grande que el original
+                .downsample(DownsampleStrategy.CENTER_INSIDE)
+                // Misma política en todas partes: original de red en disco, archivos locales sin duplicar
+                .diskCacheStrategy(DiskCacheStrategy.AUTOMATIC));
+
+        builder.addGlobalRequestListener(PictogramCacheStats.getInstance());
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+}
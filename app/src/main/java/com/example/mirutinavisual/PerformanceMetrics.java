@@ -0,0 +1,62 @@
+package com.example.mirutinavisual;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Métricas de rendimiento en memoria (duraciones en ms) con resumen en el log
+public class PerformanceMetrics {
+
+    private static final Map<String, Metric> METRICS = new ConcurrentHashMap<>();
+
+    private static class Metric {
+        long count;
+        long totalMs;
+        long maxMs;
+        long lastMs;
+    }
+
+    private PerformanceMetrics() {
+    }
+
+    public static void record(String name, long durationMs) {
+        Metric metric = METRICS.computeIfAbsent(name, key -> new Metric());
+        synchronized (metric) {
+            metric.count++;
+            metric.totalMs += durationMs;
+            metric.maxMs = Math.max(metric.maxMs, durationMs);
+            metric.lastMs = durationMs;
+        }
+        System.out.println("METRICS: " + name + " = " + durationMs + " ms (" + getSummary(name) + ")");
+    }
+
+    public static long getCount(String name) {
+        Metric metric = METRICS.get(name);
+        if (metric == null) return 0;
+        synchronized (metric) {
+            return metric.count;
+        }
+    }
+
+    public static double getAverageMs(String name) {
+        Metric metric = METRICS.get(name);
+        if (metric == null) return 0;
+        synchronized (metric) {
+            return metric.count == 0 ? 0 : (double) metric.totalMs / metric.count;
+        }
+    }
+
+    public static String getSummary(String name) {
+        Metric metric = METRICS.get(name);
+        if (metric == null) return "sin datos";
+        synchronized (metric) {
+            return String.format(Locale.ROOT, "n=%d media=%.1f máx=%d última=%d",
+                    metric.count, metric.count == 0 ? 0 : (double) metric.totalMs / metric.count,
+                    metric.maxMs, metric.lastMs);
+        }
+    }
+
+    public static void reset() {
+        METRICS.clear();
+    }
+}
@@ -14,7 +14,7 @@ public class Pictogram {
     public Pictogram(int id, List<String> keywords) {
         this.id = id;
         this.keywords = keywords;
-        this.imageUrl = "https://api.arasaac.org/api/pictograms/" + id + "?download=false";
+        this.imageUrl = PictogramSize.FULL.urlFor(id);
     }
 
     // Getters y Setters
@@ -24,7 +24,7 @@ public class Pictogram {
 
     public void setId(int id) {
         this.id = id;
-        this.imageUrl = "https://api.arasaac.org/api/pictograms/" + id + "?download=false";
+        this.imageUrl = PictogramSize.FULL.urlFor(id);
     }
 
     public List<String> getKeywords() {
@@ -39,6 +39,10 @@ public class Pictogram {
         return imageUrl;
     }
 
+    public String getImageUrl(PictogramSize size) {
+        return size.urlFor(id);
+    }
+
     public void setImageUrl(String imageUrl) {
         this.imageUrl = imageUrl;
     }
@@ -1,5 +1,7 @@
 package com.example.mirutinavisual;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -8,25 +10,146 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
+import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.bumptech.glide.Glide;
+
 import java.util.List;
 
 public class PictogramAdapter extends RecyclerView.Adapter<PictogramAdapter.PictogramViewHolder> {
 
+    // Cuántos elementos antes del final se pide la siguiente página
+    private static final int PREFETCH_DISTANCE = 6;
+    // Cuadrícula de 3 columnas: unas cuatro filas por delante
+    private static final int PRELOAD_AHEAD = 12;
+
     private List<Pictogram> pictograms;
     private OnPictogramClickListener listener;
-    private ArasaacApiService arasaacService;
     private int selectedPosition = -1;
+    // Solo se enlazan los resultados de las páginas ya mostradas
+    private int visibleCount;
+    private PictogramPreloader preloader;
+    // Resultados siguientes que aún no se han recibido; null cuando ya no hay más
+    private PageLoader pageLoader;
+    private boolean loadingMore;
+    // Cambia con cada búsqueda: descarta páginas de una búsqueda anterior
+    private int resultsGeneration;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final RecyclerView.OnScrollListener pagingScrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+            if (!(layoutManager instanceof LinearLayoutManager) || !hasMorePages()) return;
+
+            int lastVisible = ((LinearLayoutManager) layoutManager).findLastVisibleItemPosition();
+            if (lastVisible >= visibleCount - PREFETCH_DISTANCE) {
+                // No modificar el adapter dentro del callback de scroll
+                recyclerView.post(() -> loadNextPage());
+            }
+        }
+    };
 
     public interface OnPictogramClickListener {
         void onPictogramClick(Pictogram pictogram);
     }
 
+    // Pide los resultados que siguen a los offset ya recibidos (ArasaacApiService.loadMoreResults)
+    public interface PageLoader {
+        void loadMore(int offset, ArasaacApiService.PictogramPageCallback callback);
+    }
+
     public PictogramAdapter(List<Pictogram> pictograms, OnPictogramClickListener listener) {
         this.pictograms = pictograms;
         this.listener = listener;
-        this.arasaacService = new ArasaacApiService();
+        this.visibleCount = Math.min(ArasaacApiService.PAGE_SIZE, pictograms.size());
+    }
+
+    // Reemplazar los resultados y volver a la primera página
+    public void submitResults(List<Pictogram> results) {
+        submitResults(results, null);
+    }
+
+    // pageLoader trae el resto de resultados al acercarse al final (null si results es todo)
+    public void submitResults(List<Pictogram> results, PageLoader pageLoader) {
+        pictograms.clear();
+        pictograms.addAll(results);
+        selectedPosition = -1;
+        visibleCount = Math.min(ArasaacApiService.PAGE_SIZE, pictograms.size());
+        this.pageLoader = results.isEmpty() ? null : pageLoader;
+        loadingMore = false;
+        resultsGeneration++;
+        notifyDataSetChanged();
+    }
+
+    public boolean hasMorePages() {
+        return visibleCount < pictograms.size() || pageLoader != null;
+    }
+
+    public void loadNextPage() {
+        if (visibleCount < pictograms.size()) {
+            int start = visibleCount;
+            visibleCount = Math.min(visibleCount + ArasaacApiService.PAGE_SIZE, pictograms.size());
+            notifyItemRangeInserted(start, visibleCount - start);
+        }
+        // Queda menos de una página recibida: pedir la siguiente antes de llegar al final
+        if (pageLoader != null && !loadingMore
+                && pictograms.size() - visibleCount < ArasaacApiService.PAGE_SIZE) {
+            requestMoreResults();
+        }
+    }
+
+    private void requestMoreResults() {
+        loadingMore = true;
+        int generation = resultsGeneration;
+        pageLoader.loadMore(pictograms.size(), new ArasaacApiService.PictogramPageCallback() {
+            @Override
+            public void onPage(List<Pictogram> page, boolean hasMore) {
+                mainHandler.post(() -> {
+                    if (generation != resultsGeneration) return;
+                    loadingMore = false;
+                    if (!hasMore) {
+                        pageLoader = null;
+                    }
+                    // Si la lista ya estaba al final, mostrar la página sin esperar otro scroll
+                    boolean waiting = visibleCount == pictograms.size();
+                    pictograms.addAll(page);
+                    if (waiting && !page.isEmpty()) {
+                        loadNextPage();
+                    }
+                });
+            }
+
+            @Override
+            public void onError(String error) {
+                mainHandler.post(() -> {
+                    if (generation != resultsGeneration) return;
+                    System.out.println("PICTOGRAM_ADAPTER: Error al cargar más resultados: " + error);
+                    loadingMore = false;
+                    pageLoader = null;
+                });
+            }
+        });
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        recyclerView.addOnScrollListener(pagingScrollListener);
+        // Solo se precargan posiciones ya enlazadas (páginas visibles)
+        // Mismo scaleType que la ImageView del layout del elemento
+        preloader = new PictogramPreloader(recyclerView, PictogramSize.THUMBNAIL, ImageView.ScaleType.CENTER_CROP, PRELOAD_AHEAD,
+                position -> position < visibleCount ? pictograms.get(position).getId() : 0);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(pagingScrollListener);
+        if (preloader != null) {
+            preloader.detach();
+            preloader = null;
+        }
+        super.onDetachedFromRecyclerView(recyclerView);
     }
 
     @NonNull
@@ -42,7 +165,11 @@ public class PictogramAdapter extends RecyclerView.Adapter<PictogramAdapter.Pict
         Pictogram pictogram = pictograms.get(position);
         
         // Cargar imagen del pictograma
-        arasaacService.loadPictogramImage(pictogram, holder.pictogramImageView);
+        if (preloader != null) {
+            preloader.trackView(holder.pictogramImageView);
+        }
+        ArasaacApiService.getInstance(holder.itemView.getContext())
+                .loadPictogramImage(pictogram, holder.pictogramImageView);
         
         // Mostrar primera keyword como texto
         if (!pictogram.getKeywords().isEmpty()) {
@@ -80,9 +207,16 @@ public class PictogramAdapter extends RecyclerView.Adapter<PictogramAdapter.Pict
         });
     }
 
+    @Override
+    public void onViewRecycled(@NonNull PictogramViewHolder holder) {
+        // Liberar la miniatura al reciclar para que la memoria no crezca con el scroll
+        Glide.with(holder.pictogramImageView).clear(holder.pictogramImageView);
+        super.onViewRecycled(holder);
+    }
+
     @Override
     public int getItemCount() {
-        return pictograms.size();
+        return visibleCount;
     }
 
     public static class PictogramViewHolder extends RecyclerView.ViewHolder {
@@ -0,0 +1,119 @@
+package com.example.mirutinavisual;
+
+import android.graphics.drawable.Drawable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Contadores de aciertos de caché de Glide (registrado en MiRutinaGlideModule)
+public class PictogramCacheStats implements RequestListener<Object> {
+
+    // Cada cuántas cargas se escribe el resumen en el log
+    private static final int LOG_EVERY = 50;
+
+    private static final PictogramCacheStats INSTANCE = new PictogramCacheStats();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong localLoads = new AtomicLong();
+    private final AtomicLong remoteLoads = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public static PictogramCacheStats getInstance() {
+        return INSTANCE;
+    }
+
+    private PictogramCacheStats() {
+    }
+
+    @Override
+    public boolean onLoadFailed(@Nullable GlideException e, @Nullable Object model,
+                                @NonNull Target<Object> target, boolean isFirstResource) {
+        failures.incrementAndGet();
+        return false;
+    }
+
+    @Override
+    public boolean onResourceReady(@NonNull Object resource, @NonNull Object model, Target<Object> target,
+                                   @NonNull DataSource dataSource, boolean isFirstResource) {
+        switch (dataSource) {
+            case MEMORY_CACHE:
+                memoryHits.incrementAndGet();
+                break;
+            case DATA_DISK_CACHE:
+            case RESOURCE_DISK_CACHE:
+                diskHits.incrementAndGet();
+                break;
+            case LOCAL:
+                localLoads.incrementAndGet();
+                break;
+            default:
+                remoteLoads.incrementAndGet();
+                break;
+        }
+
+        if (getTotalLoads() % LOG_EVERY == 0) {
+            System.out.println("GLIDE_STATS: " + getSummary());
+        }
+        return false;
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    // Pictogramas guardados sin conexión (PictogramOfflineStore)
+    public long getLocalLoads() {
+        return localLoads.get();
+    }
+
+    public long getRemoteLoads() {
+        return remoteLoads.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getTotalLoads() {
+        return memoryHits.get() + diskHits.get() + localLoads.get() + remoteLoads.get();
+    }
+
+    // Fracción de cargas que no necesitaron red (0 si aún no hubo cargas)
+    public double getHitRate() {
+        long total = getTotalLoads();
+        return total == 0 ? 0 : (double) (total - remoteLoads.get()) / total;
+    }
+
+    public double getMemoryHitRate() {
+        long total = getTotalLoads();
+        return total == 0 ? 0 : (double) memoryHits.get() / total;
+    }
+
+    public String getSummary() {
+        return String.format(Locale.ROOT,
+                "cargas=%d memoria=%d disco=%d local=%d red=%d errores=%d aciertos=%.1f%%",
+                getTotalLoads(), memoryHits.get(), diskHits.get(), localLoads.get(),
+                remoteLoads.get(), failures.get(), getHitRate() * 100);
+    }
+
+    public void reset() {
+        memoryHits.set(0);
+        diskHits.set(0);
+        localLoads.set(0);
+        remoteLoads.set(0);
+        failures.set(0);
+    }
+}
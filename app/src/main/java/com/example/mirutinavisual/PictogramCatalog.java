@@ -0,0 +1,227 @@
+package com.example.mirutinavisual;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PictogramCatalog {
+
+    private static final String BASE_URL = "https://api.arasaac.org/api/pictograms";
+    private static final String CATALOG_FILE = "catalog.bin";
+    private static final int FORMAT_VERSION = 1;
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    // Refrescar como mucho una vez al día
+    public static final long REFRESH_INTERVAL_MS = DAY_MS;
+
+    private final File catalogFile;
+    private final String locale;
+
+    // Estado en memoria; se reemplaza completo en cada carga o actualización
+    private volatile PictogramCatalogIndex index;
+    private volatile long lastUpdated;
+    private Map<Integer, String[]> keywordsById;
+
+    public PictogramCatalog(File dir, String locale) {
+        if (!dir.exists() && !dir.mkdirs()) {
+            System.out.println("CATALOG: No se pudo crear el directorio " + dir);
+        }
+        this.catalogFile = new File(dir, locale + "_" + CATALOG_FILE);
+        this.locale = locale;
+    }
+
+    public boolean isReady() {
+        return index != null;
+    }
+
+    public int size() {
+        PictogramCatalogIndex current = index;
+        return current != null ? current.size() : 0;
+    }
+
+    public boolean isDownloaded() {
+        return catalogFile.exists();
+    }
+
+    public long getLastUpdated() {
+        return lastUpdated;
+    }
+
+    // Responder desde el índice local; null si el catálogo aún no está cargado
+    public List<Pictogram> search(String term, int maxResults) {
+        PictogramCatalogIndex current = index;
+        if (current == null) return null;
+        return current.search(term, maxResults);
+    }
+
+    // Cargar el catálogo compacto desde disco (llamar fuera del hilo principal)
+    public synchronized boolean loadFromDisk() {
+        if (!catalogFile.exists()) return false;
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(catalogFile)))) {
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                System.out.println("CATALOG: Versión de catálogo desconocida: " + version);
+                return false;
+            }
+
+            long savedAt = in.readLong();
+            int count = in.readInt();
+            Map<Integer, String[]> loaded = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                int id = in.readInt();
+                int keywordCount = in.readUnsignedShort();
+                String[] keywords = new String[keywordCount];
+                for (int j = 0; j < keywordCount; j++) {
+                    keywords[j] = in.readUTF();
+                }
+                loaded.put(id, keywords);
+            }
+
+            publish(loaded, savedAt);
+            System.out.println("CATALOG: Catálogo cargado desde disco: " + count + " pictogramas");
+            return true;
+        } catch (IOException e) {
+            System.out.println("CATALOG: Error al leer catálogo: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Descargar el catálogo completo de palabras clave (una sola vez)
+    public synchronized void downloadFull() throws IOException {
+        Map<Integer, String[]> downloaded = fetch(BASE_URL + "/all/" + locale);
+        long now = System.currentTimeMillis();
+        writeToDisk(downloaded, now);
+        publish(downloaded, now);
+        System.out.println("CATALOG: Catálogo completo descargado: " + downloaded.size() + " pictogramas");
+    }
+
+    // Traer solo lo modificado desde la última actualización y fusionarlo
+    public synchronized void refreshIncremental() throws IOException {
+        if (keywordsById == null) {
+            downloadFull();
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long days = Math.max(1, (now - lastUpdated + DAY_MS - 1) / DAY_MS);
+        Map<Integer, String[]> changes = fetch(BASE_URL + "/" + locale + "/days/" + days);
+
+        Map<Integer, String[]> merged = new HashMap<>(keywordsById);
+        merged.putAll(changes);
+        writeToDisk(merged, now);
+        publish(merged, now);
+        System.out.println("CATALOG: Actualización incremental: " + changes.size() + " cambios en " + days + " días");
+    }
+
+    public boolean needsRefresh() {
+        return System.currentTimeMillis() - lastUpdated > REFRESH_INTERVAL_MS;
+    }
+
+    public synchronized void delete() {
+        index = null;
+        keywordsById = null;
+        lastUpdated = 0;
+        catalogFile.delete();
+    }
+
+    private void publish(Map<Integer, String[]> catalog, long updatedAt) {
+        keywordsById = catalog;
+        lastUpdated = updatedAt;
+        index = PictogramCatalogIndex.build(catalog);
+    }
+
+    private Map<Integer, String[]> fetch(String urlString) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(urlString).openConnection();
+        connection.setRequestMethod("GET");
+        connection.setRequestProperty("User-Agent", "MiRutinaVisual/1.0");
+        connection.setConnectTimeout(15000);
+        connection.setReadTimeout(60000);
+
+        try {
+            int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+                // ARASAAC responde 404 cuando no hay cambios en el periodo
+                return new HashMap<>();
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Error del servidor: " + responseCode);
+            }
+
+            try (JsonReader reader = new JsonReader(new InputStreamReader(
+                    new BufferedInputStream(connection.getInputStream()), StandardCharsets.UTF_8))) {
+                return readKeywords(reader);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // Leer solo _id y keywords[].keyword de cada pictograma
+    private static Map<Integer, String[]> readKeywords(JsonReader reader) throws IOException {
+        Map<Integer, String[]> result = new HashMap<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int id = -1;
+            List<String> keywords = new ArrayList<>();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("_id".equals(name) && reader.peek() == JsonToken.NUMBER) {
+                    id = reader.nextInt();
+                } else if ("keywords".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    PictogramJsonParser.readKeywords(reader, keywords);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (id > 0) {
+                result.put(id, keywords.toArray(new String[0]));
+            }
+        }
+        reader.endArray();
+        return result;
+    }
+
+    private void writeToDisk(Map<Integer, String[]> catalog, long savedAt) throws IOException {
+        File temp = new File(catalogFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(savedAt);
+            out.writeInt(catalog.size());
+            for (Map.Entry<Integer, String[]> entry : catalog.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeShort(entry.getValue().length);
+                for (String keyword : entry.getValue()) {
+                    out.writeUTF(keyword);
+                }
+            }
+        }
+
+        if (!temp.renameTo(catalogFile)) {
+            temp.delete();
+            throw new IOException("No se pudo reemplazar el catálogo");
+        }
+    }
+}
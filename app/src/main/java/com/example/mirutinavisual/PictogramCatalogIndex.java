@@ -0,0 +1,164 @@
+package com.example.mirutinavisual;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+public class PictogramCatalogIndex {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^a-z0-9ñ]+");
+
+    // Términos ordenados (sin acentos) y sus listas de IDs, en paralelo
+    private final String[] terms;
+    private final int[][] postings;
+    // Palabras clave originales (con acentos) para mostrar en la interfaz
+    private final Map<Integer, String[]> keywordsById;
+
+    private PictogramCatalogIndex(String[] terms, int[][] postings, Map<Integer, String[]> keywordsById) {
+        this.terms = terms;
+        this.postings = postings;
+        this.keywordsById = keywordsById;
+    }
+
+    // Construir el índice invertido a partir del catálogo id -> palabras clave
+    public static PictogramCatalogIndex build(Map<Integer, String[]> keywordsById) {
+        TreeMap<String, LinkedHashSet<Integer>> termToIds = new TreeMap<>();
+        TreeMap<String, LinkedHashSet<Integer>> tokenToIds = new TreeMap<>();
+
+        for (Map.Entry<Integer, String[]> entry : keywordsById.entrySet()) {
+            for (String keyword : entry.getValue()) {
+                String normalized = normalize(keyword);
+                if (normalized.isEmpty()) continue;
+
+                // Frase completa ("cepillarse los dientes") y cada palabra por separado
+                addPosting(termToIds, normalized, entry.getKey());
+                for (String token : tokenize(normalized)) {
+                    addPosting(tokenToIds, token, entry.getKey());
+                }
+            }
+        }
+
+        // Las frases completas van delante para que la coincidencia exacta salga primero
+        for (Map.Entry<String, LinkedHashSet<Integer>> entry : tokenToIds.entrySet()) {
+            for (Integer id : entry.getValue()) {
+                addPosting(termToIds, entry.getKey(), id);
+            }
+        }
+
+        String[] terms = new String[termToIds.size()];
+        int[][] postings = new int[termToIds.size()][];
+        int i = 0;
+        for (Map.Entry<String, LinkedHashSet<Integer>> entry : termToIds.entrySet()) {
+            terms[i] = entry.getKey();
+            int[] ids = new int[entry.getValue().size()];
+            int j = 0;
+            for (Integer id : entry.getValue()) {
+                ids[j++] = id;
+            }
+            postings[i] = ids;
+            i++;
+        }
+
+        return new PictogramCatalogIndex(terms, postings, new HashMap<>(keywordsById));
+    }
+
+    private static void addPosting(TreeMap<String, LinkedHashSet<Integer>> termToIds, String term, int id) {
+        LinkedHashSet<Integer> ids = termToIds.get(term);
+        if (ids == null) {
+            ids = new LinkedHashSet<>();
+            termToIds.put(term, ids);
+        }
+        ids.add(id);
+    }
+
+    // Minúsculas y sin acentos: "Camión" y "camion" coinciden
+    public static String normalize(String text) {
+        if (text == null) return "";
+        String lower = text.toLowerCase(Locale.ROOT).trim();
+        // Conservar la ñ, que en español es una letra distinta de la n
+        lower = lower.replace('ñ', '\u0001');
+        String stripped = DIACRITICS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+        return stripped.replace('\u0001', 'ñ').replaceAll("\\s+", " ");
+    }
+
+    private static List<String> tokenize(String normalized) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(normalized)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    public int size() {
+        return keywordsById.size();
+    }
+
+    // Buscar por prefijo: cada palabra de la consulta debe coincidir con algún término
+    public List<Pictogram> search(String query, int maxResults) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || maxResults <= 0) {
+            return Collections.emptyList();
+        }
+
+        // Primero coincidencias exactas con la frase completa
+        LinkedHashSet<Integer> ordered = new LinkedHashSet<>();
+        int exact = Arrays.binarySearch(terms, normalized);
+        if (exact >= 0) {
+            for (int id : postings[exact]) {
+                ordered.add(id);
+            }
+        }
+
+        // Después intersección de prefijos de cada palabra
+        Set<Integer> matches = null;
+        for (String token : tokenize(normalized)) {
+            Set<Integer> tokenMatches = collectPrefix(token);
+            if (matches == null) {
+                matches = tokenMatches;
+            } else {
+                matches.retainAll(tokenMatches);
+            }
+            if (matches.isEmpty()) break;
+        }
+        if (matches != null) {
+            ordered.addAll(matches);
+        }
+
+        List<Pictogram> results = new ArrayList<>();
+        for (Integer id : ordered) {
+            if (results.size() >= maxResults) break;
+            String[] keywords = keywordsById.get(id);
+            List<String> keywordList = keywords != null && keywords.length > 0
+                    ? Arrays.asList(keywords)
+                    : Collections.singletonList("Pictograma " + id);
+            results.add(new Pictogram(id, new ArrayList<>(keywordList)));
+        }
+        return results;
+    }
+
+    private Set<Integer> collectPrefix(String prefix) {
+        Set<Integer> ids = new LinkedHashSet<>();
+        int start = Arrays.binarySearch(terms, prefix);
+        if (start < 0) {
+            start = -start - 1;
+        }
+        for (int i = start; i < terms.length && terms[i].startsWith(prefix); i++) {
+            for (int id : postings[i]) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.mirutinavisual;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.widget.ImageView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+
+import java.io.File;
+
+// Punto único para cargar pictogramas con Glide eligiendo la variante según el tamaño de la vista
+public class PictogramImageLoader {
+
+    private PictogramImageLoader() {
+    }
+
+    // Primero la copia guardada sin conexión; si no existe, la URL de ARASAAC
+    public static RequestBuilder<Drawable> request(Context context, RequestManager glide,
+                                                   int pictogramId, PictogramSize size) {
+        File pinned = PictogramOfflineStore.getInstance(context).getPinnedFile(pictogramId, size);
+        if (pinned != null) {
+            return glide.load(pinned);
+        }
+        return glide.load(size.urlFor(pictogramId));
+    }
+
+    // Petición para una vista concreta con la misma transformación que añadiría into() según
+    // su scaleType. La usan load y preload: con la misma transformación y tamaño la clave de
+    // caché coincide y el into() posterior encuentra la imagen ya decodificada
+    public static RequestBuilder<Drawable> requestFor(ImageView target, int pictogramId, PictogramSize size) {
+        return fitTo(request(target.getContext(), Glide.with(target), pictogramId, size), target.getScaleType());
+    }
+
+    // Mismo criterio que Glide en into(ImageView)
+    public static <T> RequestBuilder<T> fitTo(RequestBuilder<T> request, ImageView.ScaleType scaleType) {
+        if (scaleType == null) return request;
+        switch (scaleType) {
+            case CENTER_CROP:
+                return request.optionalCenterCrop();
+            case CENTER_INSIDE:
+            case FIT_XY:
+                return request.optionalCenterInside();
+            case FIT_CENTER:
+            case FIT_START:
+            case FIT_END:
+                return request.optionalFitCenter();
+            default:
+                return request;
+        }
+    }
+
+    public static void load(ImageView imageView, int pictogramId, PictogramSize size,
+                            int placeholderRes, int errorRes) {
+        if (pictogramId <= 0) {
+            imageView.setImageResource(placeholderRes);
+            return;
+        }
+
+        requestFor(imageView, pictogramId, size)
+                .placeholder(placeholderRes)
+                .error(errorRes)
+                .into(imageView);
+    }
+
+    // Descargar y decodificar a la memoria de Glide con el tamaño y la transformación de la
+    // vista destino, para que el into() posterior sobre esa vista sea un acierto en memoria
+    public static void preload(ImageView target, int pictogramId, PictogramSize size) {
+        if (pictogramId <= 0) return;
+
+        RequestBuilder<Drawable> request = requestFor(target, pictogramId, size);
+        int width = target.getWidth() - target.getPaddingLeft() - target.getPaddingRight();
+        int height = target.getHeight() - target.getPaddingTop() - target.getPaddingBottom();
+        if (width > 0 && height > 0) {
+            request.preload(width, height);
+        } else {
+            // Vista aún sin medir: al menos queda en la caché de disco
+            request.preload();
+        }
+    }
+
+    // Algunos modelos guardan el ID como texto
+    public static int parseId(String pictogramId) {
+        if (pictogramId == null) return 0;
+        try {
+            return Integer.parseInt(pictogramId.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.mirutinavisual;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PictogramJsonParser {
+
+    // Para mostrar y seleccionar basta con las primeras palabras clave;
+    // así cada resultado ocupa lo mismo aunque ARASAAC devuelva decenas
+    public static final int MAX_KEYWORDS_PER_PICTOGRAM = 5;
+
+    private PictogramJsonParser() {
+    }
+
+    // Leer la respuesta de búsqueda en streaming y parar al llegar al límite:
+    // el resto del array (a veces cientos de entradas) nunca se lee ni se materializa
+    public static List<Pictogram> parse(Reader input, int maxResults) throws IOException {
+        if (maxResults <= 0) return new ArrayList<>();
+
+        JsonReader reader = new JsonReader(input);
+        reader.beginArray();
+        return readPictograms(reader, maxResults);
+    }
+
+    // Siguientes maxResults pictogramas válidos de un array ya abierto; el lector queda
+    // justo detrás del último leído (PictogramResultStream sigue desde ahí)
+    static List<Pictogram> readPictograms(JsonReader reader, int maxResults) throws IOException {
+        List<Pictogram> pictograms = new ArrayList<>();
+        while (pictograms.size() < maxResults && reader.hasNext()) {
+            Pictogram pictogram = readPictogram(reader);
+            if (pictogram != null) {
+                pictograms.add(pictogram);
+            }
+        }
+        return pictograms;
+    }
+
+    // Un objeto del array: solo _id y keywords[].keyword, el resto se salta sin crear objetos
+    static Pictogram readPictogram(JsonReader reader) throws IOException {
+        int id = -1;
+        List<String> keywords = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("_id".equals(name) && reader.peek() == JsonToken.NUMBER) {
+                id = reader.nextInt();
+            } else if ("keywords".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                readKeywords(reader, keywords, MAX_KEYWORDS_PER_PICTOGRAM);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (id <= 0) return null;
+
+        // Si no hay keywords, usar un placeholder
+        if (keywords.isEmpty()) {
+            keywords.add("Pictograma " + id);
+        }
+        return new Pictogram(id, keywords);
+    }
+
+    static void readKeywords(JsonReader reader, List<String> keywords) throws IOException {
+        readKeywords(reader, keywords, Integer.MAX_VALUE);
+    }
+
+    static void readKeywords(JsonReader reader, List<String> keywords, int maxKeywords) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("keyword".equals(reader.nextName()) && reader.peek() == JsonToken.STRING
+                        && keywords.size() < maxKeywords) {
+                    keywords.add(reader.nextString());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.mirutinavisual;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Pictogramas de las rutinas guardados en filesDir: el sistema no los borra
+// y el modo niño puede mostrarlos sin conexión
+public class PictogramOfflineStore {
+
+    private static final String STORE_DIR = "pinned_pictograms";
+    private static final String FILE_SUFFIX = ".png";
+
+    private static volatile PictogramOfflineStore instance;
+
+    private final File storeDir;
+    // Un solo hilo: la descarga es en segundo plano y no debe competir con la interfaz
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    // Nombres de archivo ya guardados, para no consultar el disco en cada bind
+    private final Set<String> pinnedFiles = ConcurrentHashMap.newKeySet();
+    // IDs ya encolados o descargados en esta sesión
+    private final Set<Integer> requestedIds = ConcurrentHashMap.newKeySet();
+
+    public static PictogramOfflineStore getInstance(Context context) {
+        if (instance == null) {
+            synchronized (PictogramOfflineStore.class) {
+                if (instance == null) {
+                    instance = new PictogramOfflineStore(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private PictogramOfflineStore(Context appContext) {
+        storeDir = new File(appContext.getFilesDir(), STORE_DIR);
+        if (!storeDir.exists() && !storeDir.mkdirs()) {
+            System.out.println("OFFLINE_STORE: No se pudo crear el directorio " + storeDir);
+        }
+
+        String[] existing = storeDir.list((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (existing != null) {
+            for (String name : existing) {
+                pinnedFiles.add(name);
+            }
+        }
+    }
+
+    // Archivo local del pictograma o null si aún no está guardado
+    public File getPinnedFile(int pictogramId, PictogramSize size) {
+        String name = fileName(pictogramId, size);
+        return pinnedFiles.contains(name) ? new File(storeDir, name) : null;
+    }
+
+    // Guardar los pictogramas de las cabeceras. Los de los pasos los guarda ActivityStepsStore
+    // al sincronizar cada secuencia (las cabeceras ya no llevan pasos)
+    public void pinActivities(Collection<Activity> activities) {
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (Activity activity : activities) {
+            if (activity != null) {
+                ids.add(activity.getPictogramId());
+            }
+        }
+        pinAll(ids);
+    }
+
+    public void pinAll(Collection<Integer> pictogramIds) {
+        for (Integer id : pictogramIds) {
+            if (id == null || id <= 0 || !requestedIds.add(id)) continue;
+            executorService.execute(() -> pin(id));
+        }
+    }
+
+    private void pin(int pictogramId) {
+        for (PictogramSize size : PictogramSize.values()) {
+            if (getPinnedFile(pictogramId, size) != null) continue;
+
+            try {
+                download(pictogramId, size);
+            } catch (IOException e) {
+                System.out.println("OFFLINE_STORE: Error al guardar pictograma " + pictogramId + ": " + e.getMessage());
+                // Permitir reintentar en el próximo cambio de datos
+                requestedIds.remove(pictogramId);
+                return;
+            }
+        }
+    }
+
+    private void download(int pictogramId, PictogramSize size) throws IOException {
+        String name = fileName(pictogramId, size);
+        File target = new File(storeDir, name);
+        File temp = new File(storeDir, name + ".tmp");
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(size.urlFor(pictogramId)).openConnection();
+        connection.setRequestProperty("User-Agent", "MiRutinaVisual/1.0");
+        connection.setConnectTimeout(10000);
+        connection.setReadTimeout(15000);
+
+        try {
+            int responseCode = connection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Error del servidor: " + responseCode);
+            }
+
+            try (InputStream in = new BufferedInputStream(connection.getInputStream());
+                 OutputStream out = new FileOutputStream(temp)) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        } finally {
+            connection.disconnect();
+        }
+
+        // Renombrar al final: nunca se lee un archivo a medio escribir
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("No se pudo guardar " + name);
+        }
+        pinnedFiles.add(name);
+    }
+
+    private static String fileName(int pictogramId, PictogramSize size) {
+        return pictogramId + "_" + size.getPixels() + FILE_SUFFIX;
+    }
+}
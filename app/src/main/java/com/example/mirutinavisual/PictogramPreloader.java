@@ -0,0 +1,74 @@
+package com.example.mirutinavisual;
+
+import android.content.Context;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
+import com.bumptech.glide.util.ViewPreloadSizeProvider;
+
+import java.util.Collections;
+import java.util.List;
+
+// Precarga los pictogramas de los siguientes elementos de una lista según el scroll,
+// para que al llegar a ellos ya estén decodificados en la caché de memoria
+public class PictogramPreloader implements ListPreloader.PreloadModelProvider<Integer> {
+
+    public interface PictogramIdLookup {
+        // Devuelve 0 si la posición no tiene pictograma
+        int getPictogramIdAt(int position);
+    }
+
+    private final Context context;
+    private final RecyclerView recyclerView;
+    private final RequestManager glide;
+    private final PictogramSize size;
+    // scaleType de la ImageView del elemento: into() añade su transformación y la precarga
+    // tiene que llevar la misma para compartir clave de caché
+    private final ImageView.ScaleType scaleType;
+    private final PictogramIdLookup lookup;
+    // Mismo tamaño que la vista real; con la transformación, la clave coincide con la del bind
+    private final ViewPreloadSizeProvider<Integer> sizeProvider = new ViewPreloadSizeProvider<>();
+    private final RecyclerViewPreloader<Integer> scrollPreloader;
+
+    public PictogramPreloader(RecyclerView recyclerView, PictogramSize size, ImageView.ScaleType scaleType,
+                              int maxPreload, PictogramIdLookup lookup) {
+        this.context = recyclerView.getContext();
+        this.recyclerView = recyclerView;
+        this.glide = Glide.with(recyclerView);
+        this.size = size;
+        this.scaleType = scaleType;
+        this.lookup = lookup;
+        this.scrollPreloader = new RecyclerViewPreloader<>(glide, this, sizeProvider, maxPreload);
+        recyclerView.addOnScrollListener(scrollPreloader);
+    }
+
+    // Llamar en onBindViewHolder con la ImageView del pictograma
+    public void trackView(ImageView imageView) {
+        sizeProvider.setView(imageView);
+    }
+
+    public void detach() {
+        recyclerView.removeOnScrollListener(scrollPreloader);
+    }
+
+    @NonNull
+    @Override
+    public List<Integer> getPreloadItems(int position) {
+        int pictogramId = lookup.getPictogramIdAt(position);
+        return pictogramId > 0 ? Collections.singletonList(pictogramId) : Collections.emptyList();
+    }
+
+    @Nullable
+    @Override
+    public RequestBuilder<?> getPreloadRequestBuilder(@NonNull Integer pictogramId) {
+        return PictogramImageLoader.fitTo(PictogramImageLoader.request(context, glide, pictogramId, size), scaleType);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.mirutinavisual;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Respuesta de búsqueda leída directamente de la conexión, por páginas: solo se descargan y
+// convierten en Pictogram las entradas que la pantalla llega a pedir. La conexión queda
+// abierta entre páginas como cursor; close() la cierra.
+class PictogramResultStream implements Closeable {
+
+    private final HttpURLConnection connection;
+    private final JsonReader reader;
+    // Pictogramas válidos ya entregados: la posición que pide la pantalla
+    private int position;
+    private boolean exhausted;
+
+    // connection ya respondió 200
+    PictogramResultStream(HttpURLConnection connection) throws IOException {
+        this.connection = connection;
+        try {
+            this.reader = new JsonReader(new BufferedReader(new InputStreamReader(
+                    connection.getInputStream(), StandardCharsets.UTF_8)));
+            reader.beginArray();
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    synchronized int position() {
+        return position;
+    }
+
+    synchronized boolean hasMore() {
+        return !exhausted;
+    }
+
+    synchronized List<Pictogram> next(int count) throws IOException {
+        List<Pictogram> page = PictogramJsonParser.readPictograms(reader, count);
+        exhausted = !reader.hasNext();
+        position += page.size();
+        return page;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            System.out.println("ARASAAC: Error al cerrar respuesta: " + e.getMessage());
+        }
+        connection.disconnect();
+    }
+}
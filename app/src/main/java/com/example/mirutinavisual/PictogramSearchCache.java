@@ -0,0 +1,237 @@
+package com.example.mirutinavisual;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class PictogramSearchCache {
+
+    // Valores por defecto pensados para una sesión larga de creación de rutinas
+    public static final long DEFAULT_TTL_MS = 7L * 24 * 60 * 60 * 1000; // 7 días
+    public static final int DEFAULT_MEMORY_ENTRIES = 64;
+    public static final long DEFAULT_DISK_BYTES = 2L * 1024 * 1024; // 2 MB
+
+    private static final String FILE_SUFFIX = ".json";
+
+    private final File diskDir;
+    private final long ttlMs;
+    private final long maxDiskBytes;
+    private final Gson gson;
+    private final LinkedHashMap<String, CachedSearch> memoryCache;
+
+    // Entrada serializada tanto en memoria como en disco
+    private static class CachedSearch {
+        String key;
+        long savedAt;
+        List<Pictogram> pictograms;
+    }
+
+    public PictogramSearchCache(File diskDir) {
+        this(diskDir, DEFAULT_TTL_MS, DEFAULT_MEMORY_ENTRIES, DEFAULT_DISK_BYTES);
+    }
+
+    public PictogramSearchCache(File diskDir, long ttlMs, int maxMemoryEntries, long maxDiskBytes) {
+        this.diskDir = diskDir;
+        this.ttlMs = ttlMs;
+        this.maxDiskBytes = maxDiskBytes;
+        this.gson = new Gson();
+
+        // LinkedHashMap en orden de acceso = LRU
+        this.memoryCache = new LinkedHashMap<String, CachedSearch>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedSearch> eldest) {
+                return size() > maxMemoryEntries;
+            }
+        };
+
+        if (diskDir != null && !diskDir.exists() && !diskDir.mkdirs()) {
+            System.out.println("SEARCH_CACHE: No se pudo crear el directorio " + diskDir);
+        }
+    }
+
+    // Normalizar término y locale para que "Comer ", "comer" y "COMER" compartan entrada
+    public static String buildKey(String term, String locale) {
+        String normalizedTerm = term == null ? "" : term.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        String normalizedLocale = locale == null ? "" : locale.trim().toLowerCase(Locale.ROOT);
+        return normalizedLocale + ":" + normalizedTerm;
+    }
+
+    // Solo en memoria: seguro para llamar desde el hilo principal
+    public synchronized List<Pictogram> getFromMemory(String key) {
+        CachedSearch entry = memoryCache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (isExpired(entry)) {
+            memoryCache.remove(key);
+            return null;
+        }
+        return copyOf(entry.pictograms);
+    }
+
+    // Memoria y luego disco; devuelve null si no existe o si caducó
+    public List<Pictogram> get(String key) {
+        return get(key, false);
+    }
+
+    // Igual que get() pero ignora el TTL: se usa como respaldo sin conexión
+    public List<Pictogram> getStale(String key) {
+        return get(key, true);
+    }
+
+    private List<Pictogram> get(String key, boolean allowExpired) {
+        synchronized (this) {
+            CachedSearch entry = memoryCache.get(key);
+            if (entry != null && (allowExpired || !isExpired(entry))) {
+                return copyOf(entry.pictograms);
+            }
+        }
+
+        CachedSearch diskEntry = readFromDisk(key);
+        if (diskEntry == null || (!allowExpired && isExpired(diskEntry))) {
+            return null;
+        }
+
+        synchronized (this) {
+            memoryCache.put(key, diskEntry);
+        }
+        return copyOf(diskEntry.pictograms);
+    }
+
+    public void put(String key, List<Pictogram> pictograms) {
+        CachedSearch entry = new CachedSearch();
+        entry.key = key;
+        entry.savedAt = System.currentTimeMillis();
+        entry.pictograms = copyOf(pictograms);
+
+        synchronized (this) {
+            memoryCache.put(key, entry);
+        }
+
+        writeToDisk(entry);
+    }
+
+    public synchronized void clearMemory() {
+        memoryCache.clear();
+    }
+
+    public void clear() {
+        clearMemory();
+        if (diskDir == null) return;
+
+        File[] files = diskDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private boolean isExpired(CachedSearch entry) {
+        return System.currentTimeMillis() - entry.savedAt > ttlMs;
+    }
+
+    private CachedSearch readFromDisk(String key) {
+        if (diskDir == null) return null;
+
+        File file = fileFor(key);
+        if (!file.exists()) return null;
+
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            CachedSearch entry = gson.fromJson(reader, CachedSearch.class);
+            // Verificar la clave por si hubo colisión de nombre de archivo
+            if (entry == null || !key.equals(entry.key) || entry.pictograms == null) {
+                return null;
+            }
+            // Marcar como usado recientemente para la expulsión LRU en disco
+            file.setLastModified(System.currentTimeMillis());
+            return entry;
+        } catch (Exception e) {
+            System.out.println("SEARCH_CACHE: Error al leer caché en disco: " + e.getMessage());
+            file.delete();
+            return null;
+        }
+    }
+
+    private void writeToDisk(CachedSearch entry) {
+        if (diskDir == null) return;
+
+        File target = fileFor(entry.key);
+        File temp = new File(diskDir, target.getName() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+            gson.toJson(entry, writer);
+        } catch (IOException e) {
+            System.out.println("SEARCH_CACHE: Error al escribir caché en disco: " + e.getMessage());
+            temp.delete();
+            return;
+        }
+
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            return;
+        }
+
+        trimDisk();
+    }
+
+    // Expulsar los archivos menos usados hasta quedar bajo el límite de bytes
+    private synchronized void trimDisk() {
+        File[] files = diskDir.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (files == null) return;
+
+        long totalBytes = 0;
+        for (File file : files) {
+            totalBytes += file.length();
+        }
+        if (totalBytes <= maxDiskBytes) return;
+
+        Arrays.sort(files, (f1, f2) -> Long.compare(f1.lastModified(), f2.lastModified()));
+        for (File file : files) {
+            if (totalBytes <= maxDiskBytes) break;
+            long length = file.length();
+            if (file.delete()) {
+                totalBytes -= length;
+            }
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(diskDir, sha1(key) + FILE_SUFFIX);
+    }
+
+    private static String sha1(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) {
+                hex.append(String.format(Locale.ROOT, "%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+
+    private static List<Pictogram> copyOf(List<Pictogram> pictograms) {
+        if (pictograms == null) return Collections.emptyList();
+        return new ArrayList<>(pictograms);
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.mirutinavisual;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.widget.EditText;
+
+import java.util.List;
+
+// Búsqueda mientras se escribe: espera a que el usuario pare de teclear,
+// cancela la búsqueda anterior y descarta respuestas que ya no corresponden
+public class PictogramSearchDebouncer {
+
+    public static final long DEFAULT_DEBOUNCE_MS = 350;
+    public static final int MIN_QUERY_LENGTH = 2;
+
+    public interface Listener {
+        void onSearchStarted(String term);
+        void onResults(String term, List<Pictogram> pictograms);
+        void onError(String term, String error);
+        // La búsqueda en curso se descartó sin resultado (texto borrado o cancel())
+        void onSearchCancelled();
+    }
+
+    private final ArasaacApiService apiService;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private long debounceMs;
+    // Solo se entregan resultados cuyo número coincide con la última búsqueda lanzada
+    private int currentSequence;
+    private String currentTerm;
+    private ArasaacApiService.SearchHandle activeSearch;
+    private Runnable pendingSearch;
+
+    public PictogramSearchDebouncer(ArasaacApiService apiService, Listener listener) {
+        this(apiService, DEFAULT_DEBOUNCE_MS, listener);
+    }
+
+    public PictogramSearchDebouncer(ArasaacApiService apiService, long debounceMs, Listener listener) {
+        this.apiService = apiService;
+        this.debounceMs = debounceMs;
+        this.listener = listener;
+    }
+
+    public void setDebounceMs(long debounceMs) {
+        this.debounceMs = debounceMs;
+    }
+
+    public void attachTo(EditText editText) {
+        editText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                onQueryChanged(s.toString().trim());
+            }
+        });
+    }
+
+    // Llamar desde el hilo principal con cada cambio del texto
+    public void onQueryChanged(String term) {
+        cancelPending();
+
+        if (term.length() < MIN_QUERY_LENGTH) {
+            // Texto borrado o demasiado corto: la búsqueda en curso ya no sirve
+            cancel();
+            return;
+        }
+        if (term.equals(currentTerm)) {
+            return;
+        }
+
+        pendingSearch = () -> searchNow(term);
+        mainHandler.postDelayed(pendingSearch, debounceMs);
+    }
+
+    // Búsqueda inmediata (botón buscar): también reemplaza a la anterior
+    public void searchNow(String term) {
+        // Sin avisar de la cancelación: onSearchStarted llega justo después
+        discardActive();
+
+        int sequence = currentSequence;
+        currentTerm = term;
+        listener.onSearchStarted(term);
+
+        activeSearch = apiService.searchPictograms(term, new ArasaacApiService.PictogramSearchCallback() {
+            @Override
+            public void onSuccess(List<Pictogram> pictograms) {
+                mainHandler.post(() -> {
+                    if (sequence != currentSequence) {
+                        System.out.println("SEARCH_DEBOUNCE: Descartando resultado antiguo para: " + term);
+                        return;
+                    }
+                    activeSearch = null;
+                    listener.onResults(term, pictograms);
+                });
+            }
+
+            @Override
+            public void onError(String error) {
+                mainHandler.post(() -> {
+                    if (sequence != currentSequence) return;
+                    activeSearch = null;
+                    currentTerm = null;
+                    listener.onError(term, error);
+                });
+            }
+        });
+    }
+
+    // Cancelar lo pendiente y lo que está en curso (p. ej. al cerrar la pantalla)
+    public void cancel() {
+        if (discardActive()) {
+            listener.onSearchCancelled();
+        }
+    }
+
+    // Devuelve true si había una búsqueda en curso
+    private boolean discardActive() {
+        cancelPending();
+        currentSequence++;
+        currentTerm = null;
+        if (activeSearch == null) return false;
+        activeSearch.cancel();
+        activeSearch = null;
+        return true;
+    }
+
+    private void cancelPending() {
+        if (pendingSearch != null) {
+            mainHandler.removeCallbacks(pendingSearch);
+            pendingSearch = null;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.mirutinavisual;
+
+// Variantes de ARASAAC: miniatura para listas y cuadrículas, grande para pantalla completa
+public enum PictogramSize {
+    THUMBNAIL(300),
+    FULL(500);
+
+    private static final String STATIC_URL = "https://static.arasaac.org/pictograms/";
+
+    private final int pixels;
+
+    PictogramSize(int pixels) {
+        this.pixels = pixels;
+    }
+
+    public int getPixels() {
+        return pixels;
+    }
+
+    // Cada variante tiene su propia URL, así Glide las cachea por separado
+    public String urlFor(int pictogramId) {
+        return STATIC_URL + pictogramId + "/" + pictogramId + "_" + pixels + ".png";
+    }
+}
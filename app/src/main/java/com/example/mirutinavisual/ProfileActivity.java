@@ -27,7 +27,6 @@ import androidx.core.content.ContextCompat;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 
-import java.io.IOException;
 import java.util.Locale;
 
 public class ProfileActivity extends AppCompatActivity implements TextToSpeech.OnInitListener {
@@ -115,8 +114,12 @@ public class ProfileActivity extends AppCompatActivity implements TextToSpeech.O
                     Bundle extras = result.getData().getExtras();
                     if (extras != null) {
                         Bitmap imageBitmap = (Bitmap) extras.get("data");
-                        profileImageView.setImageBitmap(imageBitmap);
-                        speakText("Foto tomada correctamente");
+                        if (imageBitmap != null) {
+                            profileImageView.setImageBitmap(imageBitmap);
+                            ProfileImageStore.getInstance(this).save(getCurrentUserId(), imageBitmap,
+                                    this::onProfilePhotoSaved);
+                            speakText("Foto tomada correctamente");
+                        }
                     }
                 }
             }
@@ -128,13 +131,17 @@ public class ProfileActivity extends AppCompatActivity implements TextToSpeech.O
             result -> {
                 if (result.getResultCode() == RESULT_OK && result.getData() != null) {
                     Uri imageUri = result.getData().getData();
-                    try {
-                        Bitmap bitmap = MediaStore.Images.Media.getBitmap(
-                            getContentResolver(), imageUri);
-                        profileImageView.setImageBitmap(bitmap);
-                        speakText("Foto seleccionada correctamente");
-                    } catch (IOException e) {
-                        showToast("Error al cargar la imagen");
+                    if (imageUri != null) {
+                        // Se decodifica reducida en segundo plano, no a resolución de cámara
+                        ProfileImageStore.getInstance(this).save(getCurrentUserId(), imageUri, bitmap -> {
+                            if (bitmap == null) {
+                                showToast("Error al cargar la imagen");
+                                return;
+                            }
+                            profileImageView.setImageBitmap(bitmap);
+                            onProfilePhotoSaved(bitmap);
+                            speakText("Foto seleccionada correctamente");
+                        });
                     }
                 }
             }
@@ -297,33 +304,37 @@ public class ProfileActivity extends AppCompatActivity implements TextToSpeech.O
                 profileImageView.setImageResource(R.drawable.ic_profile_default);
             }
         } else {
-            // Intentar cargar imagen guardada específica del usuario
-            String imageString = sharedPreferences.getString("profile_image_" + userId, "");
-            if (!imageString.isEmpty()) {
-                try {
-                    byte[] decodedString = android.util.Base64.decode(imageString, android.util.Base64.DEFAULT);
-                    android.graphics.Bitmap bitmap = android.graphics.BitmapFactory.decodeByteArray(decodedString, 0, decodedString.length);
-                    if (bitmap != null) {
-                        profileImageView.setImageBitmap(bitmap);
-                    } else {
-                        profileImageView.setImageResource(R.drawable.ic_profile_default);
-                    }
-                } catch (Exception e) {
-                    System.out.println("PROFILE: Error al cargar imagen: " + e.getMessage());
-                    profileImageView.setImageResource(R.drawable.ic_profile_default);
-                }
-            } else {
-                profileImageView.setImageResource(R.drawable.ic_profile_default);
+            // Foto guardada en archivo; se decodifica fuera del hilo principal
+            Bitmap cached = ProfileImageStore.getInstance(this).getCached(userId);
+            if (cached != null) {
+                profileImageView.setImageBitmap(cached);
+                return;
             }
+            profileImageView.setImageResource(R.drawable.ic_profile_default);
+            ProfileImageStore.getInstance(this).load(userId, bitmap -> {
+                if (bitmap != null && !isFinishing()) {
+                    profileImageView.setImageBitmap(bitmap);
+                }
+            });
         }
     }
-    
+
+    private void onProfilePhotoSaved(Bitmap bitmap) {
+        if (bitmap == null) {
+            showToast("No se pudo guardar la foto");
+            return;
+        }
+        // La foto pasa a ser el avatar (antes podía estar elegido un pictograma)
+        String userId = getCurrentUserId();
+        sharedPreferences.edit().putString("avatar_type_" + userId, "photo").apply();
+        getSharedPreferences("MiRutinaVisual", MODE_PRIVATE).edit()
+                .putString("avatar_type_" + userId, "photo").apply();
+    }
+
     private void loadPictogramAsAvatar(String pictogramId) {
-        String imageUrl = "https://api.arasaac.org/api/pictograms/" + pictogramId + "?download=false";
-        
-        // Usar Glide para cargar la imagen
-        com.bumptech.glide.Glide.with(this)
-            .load(imageUrl)
+        // Usar Glide para cargar la imagen (avatar pequeño: miniatura)
+        PictogramImageLoader.request(this, com.bumptech.glide.Glide.with(this),
+                PictogramImageLoader.parseId(pictogramId), PictogramSize.THUMBNAIL)
             .placeholder(R.drawable.ic_profile_default)
             .error(R.drawable.ic_profile_default)
             .circleCrop() // Hacer la imagen circular
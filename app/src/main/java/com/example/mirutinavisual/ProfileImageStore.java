@@ -0,0 +1,229 @@
+package com.example.mirutinavisual;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Base64;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Foto de perfil por usuario en un JPEG reducido dentro de filesDir.
+// Sustituye al Base64 en SharedPreferences, que se cargaba entero al abrir las preferencias.
+public class ProfileImageStore {
+
+    private static final String STORE_DIR = "profile_images";
+    private static final String FILE_SUFFIX = ".jpg";
+    // Los avatares se muestran como mucho a 120dp: 512 px sobra incluso en tablets
+    private static final int MAX_DIMENSION = 512;
+    private static final int JPEG_QUALITY = 85;
+    private static final int MEMORY_CACHE_BYTES = 4 * 1024 * 1024;
+
+    // Claves antiguas en SharedPreferences (ProfileActivity y ChildModeActivity)
+    private static final String LEGACY_KEY_PREFIX = "profile_image_";
+    private static final String[] LEGACY_PREFS = {"UserProfile_%s", "MiRutinaVisual"};
+
+    private static volatile ProfileImageStore instance;
+
+    private final Context appContext;
+    private final File storeDir;
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<String, Bitmap> memoryCache = new LruCache<String, Bitmap>(MEMORY_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getByteCount();
+        }
+    };
+
+    public interface AvatarCallback {
+        // bitmap es null si el usuario no tiene foto guardada
+        void onAvatarLoaded(Bitmap bitmap);
+    }
+
+    public static ProfileImageStore getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ProfileImageStore.class) {
+                if (instance == null) {
+                    instance = new ProfileImageStore(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ProfileImageStore(Context appContext) {
+        this.appContext = appContext;
+        this.storeDir = new File(appContext.getFilesDir(), STORE_DIR);
+    }
+
+    // Solo memoria: seguro en el hilo principal
+    public Bitmap getCached(String userId) {
+        return memoryCache.get(userId);
+    }
+
+    // Decodifica en segundo plano; el callback llega en el hilo principal
+    public void load(String userId, AvatarCallback callback) {
+        Bitmap cached = memoryCache.get(userId);
+        if (cached != null) {
+            callback.onAvatarLoaded(cached);
+            return;
+        }
+
+        executorService.execute(() -> {
+            migrateLegacy(userId);
+
+            Bitmap bitmap = null;
+            File file = fileFor(userId);
+            if (file.exists()) {
+                bitmap = decodeFile(file);
+                if (bitmap != null) {
+                    memoryCache.put(userId, bitmap);
+                }
+            }
+
+            Bitmap result = bitmap;
+            mainHandler.post(() -> callback.onAvatarLoaded(result));
+        });
+    }
+
+    // Foto de la cámara (miniatura que devuelve el intent)
+    public void save(String userId, Bitmap bitmap, AvatarCallback callback) {
+        executorService.execute(() -> {
+            Bitmap saved = null;
+            try {
+                saved = writeToDisk(userId, scaleDown(bitmap));
+            } catch (IOException e) {
+                System.out.println("PROFILE_STORE: Error al guardar foto: " + e.getMessage());
+            }
+            deliver(callback, saved);
+        });
+    }
+
+    // Foto de la galería: se decodifica ya reducida, nunca a tamaño completo
+    public void save(String userId, Uri imageUri, AvatarCallback callback) {
+        executorService.execute(() -> {
+            Bitmap saved = null;
+            try {
+                BitmapFactory.Options bounds = new BitmapFactory.Options();
+                bounds.inJustDecodeBounds = true;
+                try (InputStream in = appContext.getContentResolver().openInputStream(imageUri)) {
+                    BitmapFactory.decodeStream(in, null, bounds);
+                }
+
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inSampleSize = sampleSizeFor(bounds.outWidth, bounds.outHeight);
+                Bitmap decoded;
+                try (InputStream in = appContext.getContentResolver().openInputStream(imageUri)) {
+                    decoded = BitmapFactory.decodeStream(in, null, options);
+                }
+                if (decoded != null) {
+                    saved = writeToDisk(userId, scaleDown(decoded));
+                }
+            } catch (IOException | SecurityException e) {
+                System.out.println("PROFILE_STORE: Error al leer foto de galería: " + e.getMessage());
+            }
+            deliver(callback, saved);
+        });
+    }
+
+    private void deliver(AvatarCallback callback, Bitmap bitmap) {
+        if (callback != null) {
+            mainHandler.post(() -> callback.onAvatarLoaded(bitmap));
+        }
+    }
+
+    // Pasar el Base64 antiguo a archivo y borrarlo de las preferencias
+    private void migrateLegacy(String userId) {
+        String key = LEGACY_KEY_PREFIX + userId;
+        for (String prefsPattern : LEGACY_PREFS) {
+            SharedPreferences prefs = appContext.getSharedPreferences(
+                    String.format(prefsPattern, userId), Context.MODE_PRIVATE);
+            String encoded = prefs.getString(key, "");
+            if (encoded.isEmpty()) continue;
+
+            if (!fileFor(userId).exists()) {
+                try {
+                    byte[] bytes = Base64.decode(encoded, Base64.DEFAULT);
+                    BitmapFactory.Options bounds = new BitmapFactory.Options();
+                    bounds.inJustDecodeBounds = true;
+                    BitmapFactory.decodeByteArray(bytes, 0, bytes.length, bounds);
+
+                    BitmapFactory.Options options = new BitmapFactory.Options();
+                    options.inSampleSize = sampleSizeFor(bounds.outWidth, bounds.outHeight);
+                    Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+                    if (bitmap != null) {
+                        writeToDisk(userId, scaleDown(bitmap));
+                        System.out.println("PROFILE_STORE: Foto migrada desde preferencias para " + userId);
+                    }
+                } catch (IllegalArgumentException | IOException e) {
+                    System.out.println("PROFILE_STORE: No se pudo migrar la foto: " + e.getMessage());
+                }
+            }
+
+            // Quitar el Base64 aunque la migración falle: no sirve y agranda el XML
+            prefs.edit().remove(key).apply();
+        }
+    }
+
+    private Bitmap writeToDisk(String userId, Bitmap bitmap) throws IOException {
+        if (!storeDir.exists() && !storeDir.mkdirs()) {
+            throw new IOException("No se pudo crear " + storeDir);
+        }
+
+        File target = fileFor(userId);
+        File temp = new File(storeDir, target.getName() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("No se pudo guardar la foto");
+        }
+
+        memoryCache.put(userId, bitmap);
+        return bitmap;
+    }
+
+    private Bitmap decodeFile(File file) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), bounds);
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSizeFor(bounds.outWidth, bounds.outHeight);
+        return BitmapFactory.decodeFile(file.getPath(), options);
+    }
+
+    // Mayor potencia de 2 que deja la imagen por encima de MAX_DIMENSION
+    private static int sampleSizeFor(int width, int height) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= MAX_DIMENSION && height / (sampleSize * 2) >= MAX_DIMENSION) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static Bitmap scaleDown(Bitmap bitmap) {
+        int largest = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (largest <= MAX_DIMENSION) return bitmap;
+
+        float scale = (float) MAX_DIMENSION / largest;
+        return Bitmap.createScaledBitmap(bitmap,
+                Math.round(bitmap.getWidth() * scale), Math.round(bitmap.getHeight() * scale), true);
+    }
+
+    private File fileFor(String userId) {
+        return new File(storeDir, userId + FILE_SUFFIX);
+    }
+}
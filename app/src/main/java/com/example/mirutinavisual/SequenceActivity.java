@@ -1,7 +1,9 @@
 package com.example.mirutinavisual;
 
 import android.content.Intent;
+import android.graphics.drawable.Drawable;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.speech.tts.TextToSpeech;
 import android.widget.Button;
 import android.widget.ImageButton;
@@ -10,22 +12,32 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.bumptech.glide.Glide;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
 import com.google.gson.Gson;
 
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 public class SequenceActivity extends AppCompatActivity implements TextToSpeech.OnInitListener {
 
+    static final String METRIC_STEP_TRANSITION = "sequence_step_transition";
+
     private TextToSpeech textToSpeech;
-    private DatabaseReference databaseReference;
     
     private Activity currentActivity;
     private SequenceStep currentStep;
+    private ActivityProgressWriter progressWriter;
+    // Paso cuya imagen está en pantalla, para medir solo los cambios de paso
+    private int displayedStepIndex = -1;
     
     // Sistema de logros
     private AchievementManager achievementManager;
@@ -42,9 +54,6 @@ public class SequenceActivity extends AppCompatActivity implements TextToSpeech.
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_sequence);
         
-        // Inicializar Firebase
-        databaseReference = FirebaseDatabase.getInstance().getReference();
-        
         // Inicializar Text-to-Speech
         textToSpeech = new TextToSpeech(this, this);
         
@@ -74,6 +83,11 @@ public class SequenceActivity extends AppCompatActivity implements TextToSpeech.
             return;
         }
         
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        if (currentActivity.getId() != null && currentUser != null) {
+            progressWriter = new ActivityProgressWriter(SyncOutbox.getInstance(this), currentUser.getUid(), currentActivity.getId());
+        }
+        
         // Inicializar vistas
         initViews();
         
@@ -82,6 +96,9 @@ public class SequenceActivity extends AppCompatActivity implements TextToSpeech.
         
         // Cargar primer paso
         loadCurrentStep();
+        
+        // Con la vista ya medida, precargar toda la secuencia al tamaño exacto
+        stepImageView.post(this::preloadSequence);
     }
     
     private void initViews() {
@@ -108,6 +125,7 @@ public class SequenceActivity extends AppCompatActivity implements TextToSpeech.
             if (currentActivity.hasPreviousStep()) {
                 currentActivity.previousStep();
                 loadCurrentStep();
+                saveCurrentStepIndex();
                 speakText("Paso anterior");
             }
         });
@@ -116,6 +134,7 @@ public class SequenceActivity extends AppCompatActivity implements TextToSpeech.
             if (currentActivity.hasNextStep()) {
                 currentActivity.nextStep();
                 loadCurrentStep();
+                saveCurrentStepIndex();
                 speakText("Siguiente paso");
             } else {
                 // FASE 2: VERIFICAR QUE TODOS LOS PASOS ESTÉN COMPLETADOS ANTES DE FINALIZAR
@@ -151,13 +170,9 @@ public class SequenceActivity extends AppCompatActivity implements TextToSpeech.
         stepNameText.setText(currentStep.getName());
         stepDescriptionText.setText(currentStep.getDescription());
         
-        // Cargar imagen del pictograma
-        String imageUrl = "https://api.arasaac.org/api/pictograms/" + currentStep.getPictogramId() + "?download=false";
-        Glide.with(this)
-            .load(imageUrl)
-            .placeholder(R.drawable.ic_placeholder)
-            .error(R.drawable.ic_error)
-            .into(stepImageView);
+        // Cargar imagen del pictograma (normalmente ya precargada: acierto en memoria)
+        loadStepImage();
+        preloadNeighbourSteps();
         
         // Actualizar progreso
         int progress = (int) currentActivity.getProgressPercentage();
@@ -195,6 +210,70 @@ public class SequenceActivity extends AppCompatActivity implements TextToSpeech.
         speakText(currentStep.getAudioText());
     }
     
+    private void loadStepImage() {
+        int stepIndex = currentActivity.getCurrentStepIndex();
+        // La primera imagen al abrir no es un cambio de paso
+        boolean isTransition = displayedStepIndex != -1 && stepIndex != displayedStepIndex;
+        displayedStepIndex = stepIndex;
+        long startedAt = SystemClock.elapsedRealtime();
+        
+        if (currentStep.getPictogramId() <= 0) {
+            stepImageView.setImageResource(R.drawable.ic_placeholder);
+            return;
+        }
+        
+        // Misma petición que preloadSequence: la imagen precargada se encuentra en memoria
+        PictogramImageLoader.requestFor(stepImageView, currentStep.getPictogramId(), PictogramSize.FULL)
+                .placeholder(R.drawable.ic_placeholder)
+                .error(R.drawable.ic_error)
+                .listener(new RequestListener<Drawable>() {
+                    @Override
+                    public boolean onLoadFailed(@Nullable GlideException e, Object model,
+                                                Target<Drawable> target, boolean isFirstResource) {
+                        return false;
+                    }
+                    
+                    @Override
+                    public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target,
+                                                   DataSource dataSource, boolean isFirstResource) {
+                        if (isTransition) {
+                            // Tiempo desde el toque hasta la imagen en pantalla
+                            long elapsed = SystemClock.elapsedRealtime() - startedAt;
+                            System.out.println("SEQUENCE: Imagen del paso " + (stepIndex + 1) + " desde " + dataSource);
+                            PerformanceMetrics.record(METRIC_STEP_TRANSITION, elapsed);
+                        }
+                        return false;
+                    }
+                })
+                .into(stepImageView);
+    }
+    
+    // Al abrir: primero los vecinos del paso actual y después el resto de la secuencia
+    private void preloadSequence() {
+        List<SequenceStep> steps = currentActivity.getSteps();
+        if (steps == null || isFinishing()) return;
+        
+        preloadNeighbourSteps();
+        for (SequenceStep step : steps) {
+            if (step != null) {
+                PictogramImageLoader.preload(stepImageView, step.getPictogramId(), PictogramSize.FULL);
+            }
+        }
+    }
+    
+    // Mantener decodificados el paso anterior y el siguiente por si la caché los expulsó
+    private void preloadNeighbourSteps() {
+        List<SequenceStep> steps = currentActivity.getSteps();
+        if (steps == null) return;
+        
+        int index = currentActivity.getCurrentStepIndex();
+        for (int neighbour : new int[]{index + 1, index - 1}) {
+            if (neighbour >= 0 && neighbour < steps.size() && steps.get(neighbour) != null) {
+                PictogramImageLoader.preload(stepImageView, steps.get(neighbour).getPictogramId(), PictogramSize.FULL);
+            }
+        }
+    }
+    
     private void completeCurrentStep() {
         if (currentStep == null) return;
         
@@ -214,8 +293,11 @@ public class SequenceActivity extends AppCompatActivity implements TextToSpeech.
         // Actualizar UI
         loadCurrentStep();
         
-        // Guardar en Firebase
-        saveProgressToFirebase();
+        // Guardar en Firebase solo este paso (se agrupa con los toques siguientes)
+        if (progressWriter != null) {
+            progressWriter.markStepCompleted(currentStep);
+            progressWriter.setCurrentStepIndex(currentActivity.getCurrentStepIndex());
+        }
     }
     
     // FASE 2: MÉTODO PARA VERIFICAR QUE TODOS LOS PASOS ESTÉN COMPLETADOS
@@ -241,29 +323,38 @@ public class SequenceActivity extends AppCompatActivity implements TextToSpeech.
         speakText("¡Felicidades! Has completado toda la secuencia de " + currentActivity.getName());
         showToast("🎉 ¡Secuencia completada!");
         
-        // *** VERIFICAR LOGROS ***
+        // Pasos pendientes y completed al outbox local al momento; estadísticas en transacción y después los logros
+        if (progressWriter != null) {
+            progressWriter.markActivityCompleted();
+        }
         if (achievementManager != null) {
-            achievementManager.onActivityCompleted();
+            Map<String, Object> pendingProgress = progressWriter != null
+                    ? progressWriter.drainPendingUpdates() : null;
+            // La pantalla se cierra ya: el resultado solo queda en el log
+            achievementManager.commitActivityCompletion(currentActivity.getId(), pendingProgress,
+                    new AchievementManager.OnCompletionCommittedListener() {
+                        @Override
+                        public void onCompletionCommitted(List<Achievement> newAchievements) {
+                            System.out.println("SEQUENCE: Finalización guardada, " + newAchievements.size() + " logros nuevos");
+                        }
+
+                        @Override
+                        public void onCompletionFailed(String error) {
+                            System.out.println("SEQUENCE: Error al guardar estadísticas de la finalización: " + error);
+                        }
+                    });
+        } else if (progressWriter != null) {
+            progressWriter.flush();
         }
         
-        // Guardar en Firebase
-        saveProgressToFirebase();
-        
         // Volver a la pantalla anterior
         setResult(RESULT_OK);
         finish();
     }
     
-    private void saveProgressToFirebase() {
-        if (currentActivity.getId() != null) {
-            databaseReference.child("activities").child(currentActivity.getId())
-                .setValue(currentActivity)
-                .addOnSuccessListener(aVoid -> {
-                    System.out.println("SEQUENCE: Progreso guardado en Firebase");
-                })
-                .addOnFailureListener(e -> {
-                    System.out.println("SEQUENCE: Error al guardar progreso: " + e.getMessage());
-                });
+    private void saveCurrentStepIndex() {
+        if (progressWriter != null) {
+            progressWriter.setCurrentStepIndex(currentActivity.getCurrentStepIndex());
         }
     }
     
@@ -289,6 +380,15 @@ public class SequenceActivity extends AppCompatActivity implements TextToSpeech.
         Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
     
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // No dejar progreso pendiente si la app pasa a segundo plano
+        if (progressWriter != null) {
+            progressWriter.flush();
+        }
+    }
+    
     @Override
     protected void onDestroy() {
         if (textToSpeech != null) {
@@ -1,5 +1,7 @@
 package com.example.mirutinavisual;
 
+import com.google.firebase.database.Exclude;
+
 public class SequenceStep {
     private String id;
     private String name;
@@ -9,6 +11,9 @@ public class SequenceStep {
     private int stepNumber;
     private boolean completed;
     private String audioText;
+    // Posición dentro de userActivitySteps/<uid>/<id> en Firebase (-1 si el paso no está guardado)
+    @Exclude
+    private int storageIndex = -1;
     
     public SequenceStep() {
         // Constructor vacío requerido por Firebase
@@ -50,4 +55,9 @@ public class SequenceStep {
     
     public String getAudioText() { return audioText; }
     public void setAudioText(String audioText) { this.audioText = audioText; }
+    
+    @Exclude
+    public int getStorageIndex() { return storageIndex; }
+    @Exclude
+    public void setStorageIndex(int storageIndex) { this.storageIndex = storageIndex; }
 }
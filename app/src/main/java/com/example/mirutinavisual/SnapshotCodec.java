@@ -0,0 +1,208 @@
+package com.example.mirutinavisual;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Conversión a mano entre los modelos y el árbol que devuelve Firebase con getValue()
+// (Map, List, Long, Double, Boolean, String). Sustituye a getValue(X.class), que recorre
+// getters y setters por reflexión en cada lectura, y a los Map armados en cada pantalla.
+// Los nombres de campo son los mismos que ya hay guardados.
+public final class SnapshotCodec {
+
+    private SnapshotCodec() {
+    }
+
+    // --- Activity (solo la cabecera: los pasos van en userActivitySteps) ---
+
+    public static Activity readActivity(String key, Object value) {
+        if (!(value instanceof Map)) return null;
+        Map<?, ?> map = (Map<?, ?>) value;
+
+        Activity activity = new Activity();
+        activity.setId(key);
+        activity.setName(getString(map, "name", null));
+        activity.setTime(getString(map, "time", null));
+        activity.setPictogramId(getInt(map, "pictogramId"));
+        activity.setPictogramKeyword(getString(map, "pictogramKeyword", null));
+        activity.setCompleted(getBoolean(map, "completed"));
+        activity.setCreatedAt(getLong(map, "createdAt"));
+        activity.setUpdatedAt(getLong(map, "updatedAt"));
+        activity.setUserId(getString(map, "userId", null));
+        // "sequence" es como lo guardaba setValue(Activity) por el getter isSequence()
+        activity.setSequence(getBoolean(map, "isSequence") || getBoolean(map, "sequence"));
+        activity.setCurrentStepIndex(getInt(map, "currentStepIndex"));
+        return activity;
+    }
+
+    // Campos que define el cuidador al crear o editar; completed y currentStepIndex no se tocan
+    public static Map<String, Object> writeActivityDefinition(Activity activity, int totalSteps) {
+        Map<String, Object> map = new HashMap<>();
+        if (activity.getId() != null) {
+            map.put("id", activity.getId());
+        }
+        map.put("name", activity.getName());
+        map.put("time", activity.getTime());
+        map.put("pictogramId", activity.getPictogramId());
+        map.put("pictogramKeyword", activity.getPictogramKeyword());
+        map.put("createdAt", activity.getCreatedAt());
+        map.put("userId", activity.getUserId());
+        map.put("isSequence", totalSteps > 0);
+        map.put("totalSteps", totalSteps);
+        return map;
+    }
+
+    // Cabecera completa tal como se lee (copia local): incluye el progreso
+    public static Map<String, Object> writeActivityHeader(Activity activity) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", activity.getId());
+        map.put("name", activity.getName());
+        map.put("time", activity.getTime());
+        map.put("pictogramId", activity.getPictogramId());
+        map.put("pictogramKeyword", activity.getPictogramKeyword());
+        map.put("completed", activity.isCompleted());
+        map.put("createdAt", activity.getCreatedAt());
+        map.put("updatedAt", activity.getUpdatedAt());
+        map.put("userId", activity.getUserId());
+        map.put("isSequence", activity.isSequence());
+        map.put("currentStepIndex", activity.getCurrentStepIndex());
+        return map;
+    }
+
+    // --- SequenceStep ---
+
+    // Sirve para todos los formatos: una lista de pasos, esté donde esté guardada.
+    // storageIndex = posición en Firebase; el resultado va ordenado por número de paso.
+    // Si faltan muchos índices (pasos borrados) Firebase devuelve un Map con claves "0", "5"...
+    // en lugar de una lista: se lee igual, tomando la clave como posición
+    public static List<SequenceStep> readSteps(Object value) {
+        List<SequenceStep> steps = new ArrayList<>();
+        if (value instanceof List) {
+            List<?> stored = (List<?>) value;
+            for (int i = 0; i < stored.size(); i++) {
+                Object stepValue = stored.get(i);
+                if (stepValue instanceof Map) {
+                    steps.add(readStep((Map<?, ?>) stepValue, i));
+                }
+            }
+        } else if (value instanceof Map) {
+            Map<Integer, Object> byIndex = new TreeMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                try {
+                    byIndex.put(Integer.parseInt(String.valueOf(entry.getKey())), entry.getValue());
+                } catch (NumberFormatException e) {
+                    // Clave que no es una posición: no es un paso
+                }
+            }
+            for (Map.Entry<Integer, Object> entry : byIndex.entrySet()) {
+                if (entry.getValue() instanceof Map) {
+                    steps.add(readStep((Map<?, ?>) entry.getValue(), entry.getKey()));
+                }
+            }
+        }
+        steps.sort((s1, s2) -> Integer.compare(s1.getStepNumber(), s2.getStepNumber()));
+        return steps;
+    }
+
+    static SequenceStep readStep(Map<?, ?> map, int storageIndex) {
+        SequenceStep step = new SequenceStep();
+        step.setId(getString(map, "id", ""));
+        step.setName(getString(map, "name", ""));
+        step.setDescription(getString(map, "description", ""));
+        step.setPictogramId(getInt(map, "pictogramId"));
+        step.setPictogramKeyword(getString(map, "pictogramKeyword", ""));
+        step.setStepNumber(getInt(map, "stepNumber"));
+        step.setCompleted(getBoolean(map, "completed"));
+        step.setAudioText(getString(map, "audioText", ""));
+        step.setStorageIndex(storageIndex);
+        return step;
+    }
+
+    public static List<Map<String, Object>> writeSteps(List<SequenceStep> steps) {
+        List<Map<String, Object>> stored = new ArrayList<>(steps.size());
+        for (SequenceStep step : steps) {
+            stored.add(writeStep(step));
+        }
+        return stored;
+    }
+
+    public static Map<String, Object> writeStep(SequenceStep step) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", step.getId());
+        map.put("name", step.getName());
+        map.put("description", step.getDescription());
+        map.put("pictogramId", step.getPictogramId());
+        map.put("pictogramKeyword", step.getPictogramKeyword());
+        map.put("stepNumber", step.getStepNumber());
+        map.put("completed", step.isCompleted());
+        map.put("audioText", step.getAudioText());
+        return map;
+    }
+
+    // --- UserStats ---
+
+    public static UserStats readUserStats(Object value) {
+        if (!(value instanceof Map)) return null;
+        Map<?, ?> map = (Map<?, ?>) value;
+
+        UserStats stats = new UserStats();
+        stats.setUserId(getString(map, "userId", null));
+        stats.setTotalActivitiesCompleted(getInt(map, "totalActivitiesCompleted"));
+        stats.setActivitiesCompletedToday(getInt(map, "activitiesCompletedToday"));
+        stats.setCurrentStreak(getInt(map, "currentStreak"));
+        stats.setMaxStreak(getInt(map, "maxStreak"));
+        stats.setLastActivityDate(getString(map, "lastActivityDate", null));
+        stats.setTotalPoints(getInt(map, "totalPoints"));
+        stats.setUnlockedAchievements(getInt(map, "unlockedAchievements"));
+        return stats;
+    }
+
+    public static Map<String, Object> writeUserStats(UserStats stats) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("userId", stats.getUserId());
+        map.put("totalActivitiesCompleted", stats.getTotalActivitiesCompleted());
+        map.put("activitiesCompletedToday", stats.getActivitiesCompletedToday());
+        map.put("currentStreak", stats.getCurrentStreak());
+        map.put("maxStreak", stats.getMaxStreak());
+        map.put("lastActivityDate", stats.getLastActivityDate());
+        map.put("totalPoints", stats.getTotalPoints());
+        map.put("unlockedAchievements", stats.getUnlockedAchievements());
+        return map;
+    }
+
+    // --- Achievement (en userAchievements/<uid>/<id> solo se guarda el estado) ---
+
+    public static boolean readAchievementUnlocked(Object value) {
+        return value instanceof Map && getBoolean((Map<?, ?>) value, "unlocked");
+    }
+
+    public static Map<String, Object> writeAchievementState(boolean unlocked, long unlockedDate) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("unlocked", unlocked);
+        map.put("unlockedDate", unlockedDate);
+        return map;
+    }
+
+    // Métodos auxiliares para extraer datos de Map de forma segura
+    private static String getString(Map<?, ?> map, String key, String fallback) {
+        Object value = map.get(key);
+        return value != null ? value.toString() : fallback;
+    }
+
+    private static long getLong(Map<?, ?> map, String key) {
+        Object value = map.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    private static int getInt(Map<?, ?> map, String key) {
+        Object value = map.get(key);
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    private static boolean getBoolean(Map<?, ?> map, String key) {
+        Object value = map.get(key);
+        return value instanceof Boolean && (Boolean) value;
+    }
+}
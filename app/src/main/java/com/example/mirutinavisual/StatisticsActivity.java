@@ -1,7 +1,10 @@
 package com.example.mirutinavisual;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.speech.tts.TextToSpeech;
+import android.text.format.DateUtils;
 import android.widget.ImageButton;
 import android.widget.ProgressBar;
 import android.widget.TextView;
@@ -17,10 +20,11 @@ import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ValueEventListener;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class StatisticsActivity extends AppCompatActivity implements TextToSpeech.OnInitListener {
 
@@ -33,6 +37,18 @@ public class StatisticsActivity extends AppCompatActivity implements TextToSpeec
     private TextView weeklyCompletionText, monthlyCompletionText, lastActivityText;
     private ProgressBar completionProgressBar;
     private CardView todayStatsCard, weeklyStatsCard, monthlyStatsCard, achievementsCard;
+    
+    private List<Activity> currentActivities;
+    private CompletionRollups.Counter dayCounter, weekCounter, monthCounter;
+    private UserStats userStats;
+    private final Map<DatabaseReference, ValueEventListener> watchedRefs = new HashMap<>();
+    // Contadores del día, semana y mes en curso: se cambian de nodo al pasar la medianoche
+    private final Map<DatabaseReference, ValueEventListener> rollupRefs = new HashMap<>();
+    private final Handler rolloverHandler = new Handler(Looper.getMainLooper());
+    private final Runnable rolloverTask = this::onDayRollover;
+    private String rollupsUserId;
+    private String rollupsDayKey;
+    private boolean summarySpoken;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -107,114 +123,160 @@ public class StatisticsActivity extends AppCompatActivity implements TextToSpeec
 
         String userId = firebaseAuth.getCurrentUser().getUid();
         
-        databaseReference.child("activities")
-                .orderByChild("userId")
-                .equalTo(userId)
-                .addValueEventListener(new ValueEventListener() {
-                    @Override
-                    public void onDataChange(DataSnapshot dataSnapshot) {
-                        calculateStatistics(dataSnapshot);
-                    }
-
-                    @Override
-                    public void onCancelled(DatabaseError databaseError) {
-                        showToast("Error al cargar estadísticas: " + databaseError.getMessage());
-                    }
-                });
-    }
-
-    private void calculateStatistics(DataSnapshot dataSnapshot) {
-        int totalActivities = 0;
-        int completedToday = 0;
-        int totalCompleted = 0;
-        int weeklyCompleted = 0;
-        int weeklyTotal = 0;
-        int monthlyCompleted = 0;
-        int monthlyTotal = 0;
-        
-        // Fechas para comparación
-        Calendar today = Calendar.getInstance();
-        Calendar weekAgo = Calendar.getInstance();
-        weekAgo.add(Calendar.DAY_OF_YEAR, -7);
-        Calendar monthAgo = Calendar.getInstance();
-        monthAgo.add(Calendar.MONTH, -1);
-        
-        String todayDateString = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(today.getTime());
-        
-        for (DataSnapshot activitySnapshot : dataSnapshot.getChildren()) {
-            Activity activity = activitySnapshot.getValue(Activity.class);
-            if (activity != null) {
-                totalActivities++;
-                
-                if (activity.isCompleted()) {
-                    totalCompleted++;
-                    
-                    // Verificar si fue completada hoy (simulación)
-                    // En una implementación real, necesitarías guardar la fecha de completación
-                    completedToday++; // Simplificado para demo
-                }
-                
-                // Estadísticas semanales y mensuales (simuladas)
-                long createdTime = activity.getCreatedAt();
-                if (createdTime > weekAgo.getTimeInMillis()) {
-                    weeklyTotal++;
-                    if (activity.isCompleted()) {
-                        weeklyCompleted++;
-                    }
-                }
-                
-                if (createdTime > monthAgo.getTimeInMillis()) {
-                    monthlyTotal++;
-                    if (activity.isCompleted()) {
-                        monthlyCompleted++;
-                    }
-                }
+        // Listener compartido con las demás pantallas; se suelta solo en onDestroy
+        ActivityRepository.getInstance(this).observe(this, userId, new ActivityRepository.ActivitiesObserver() {
+            @Override
+            public void onActivitiesChanged(List<Activity> activities) {
+                currentActivities = activities;
+                refreshStatistics();
+            }
+
+            @Override
+            public void onError(String error) {
+                showToast("Error al cargar estadísticas: " + error);
             }
+        });
+        
+        rollupsUserId = userId;
+        bindRollups();
+        watch(watchedRefs, databaseReference.child("userStats").child(userId), snapshot -> {
+            UserStats stats = SnapshotCodec.readUserStats(snapshot.getValue());
+            userStats = stats != null ? stats : new UserStats(userId);
+        });
+    }
+
+    // Un nodo por ventana: contadores ya sumados al completar, no se recorre el historial.
+    // Las claves salen de la hora actual, así que se vuelven a calcular al cambiar de día
+    private void bindRollups() {
+        unwatch(rollupRefs);
+        // Hasta que lleguen los tres nuevos se siguen viendo los valores anteriores
+        dayCounter = null;
+        weekCounter = null;
+        monthCounter = null;
+
+        long now = System.currentTimeMillis();
+        rollupsDayKey = CompletionLog.dayKey(now);
+        watch(rollupRefs, CompletionRollups.dayRef(databaseReference, rollupsUserId, now), snapshot -> dayCounter = CompletionRollups.parse(snapshot));
+        watch(rollupRefs, CompletionRollups.weekRef(databaseReference, rollupsUserId, now), snapshot -> weekCounter = CompletionRollups.parse(snapshot));
+        watch(rollupRefs, CompletionRollups.monthRef(databaseReference, rollupsUserId, now), snapshot -> monthCounter = CompletionRollups.parse(snapshot));
+    }
+
+    private void onDayRollover() {
+        if (rollupsUserId != null && !CompletionLog.dayKey(System.currentTimeMillis()).equals(rollupsDayKey)) {
+            bindRollups();
         }
+        rolloverHandler.removeCallbacks(rolloverTask);
+        rolloverHandler.postDelayed(rolloverTask, CompletionRollups.millisUntilNextDay(System.currentTimeMillis()));
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Vuelta a una pantalla abierta otro día, y aviso a la próxima medianoche
+        onDayRollover();
+    }
+
+    @Override
+    protected void onPause() {
+        rolloverHandler.removeCallbacks(rolloverTask);
+        super.onPause();
+    }
+
+    private void watch(Map<DatabaseReference, ValueEventListener> refs, DatabaseReference ref, Consumer<DataSnapshot> onValue) {
+        ValueEventListener listener = new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                // Aviso ya en cola de un nodo que se soltó al cambiar de día
+                if (refs.get(ref) != this) return;
+                onValue.accept(dataSnapshot);
+                refreshStatistics();
+            }
+
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                showToast("Error al cargar estadísticas: " + databaseError.getMessage());
+            }
+        };
+        ref.addValueEventListener(listener);
+        refs.put(ref, listener);
+    }
+
+    private static void unwatch(Map<DatabaseReference, ValueEventListener> refs) {
+        for (Map.Entry<DatabaseReference, ValueEventListener> entry : refs.entrySet()) {
+            entry.getKey().removeEventListener(entry.getValue());
+        }
+        refs.clear();
+    }
+
+    // Con todo ya cargado (actividades, contadores y racha)
+    private void refreshStatistics() {
+        if (currentActivities == null || dayCounter == null || weekCounter == null
+                || monthCounter == null || userStats == null) return;
+        calculateStatistics();
+    }
+
+    private void calculateStatistics() {
+        long now = System.currentTimeMillis();
+        int totalActivities = currentActivities.size();
+        int completedToday = (int) dayCounter.completed;
+        
+        // Cada rutina se espera una vez al día en los días ya transcurridos del periodo
+        int weeklyTotal = totalActivities * CompletionRollups.daysElapsedInWeek(now);
+        int monthlyTotal = totalActivities * CompletionRollups.daysElapsedInMonth(now);
+        
+        // La racha guardada solo se corta al completar otra: sin actividad ayer ni hoy ya es 0
+        String lastDate = userStats.getLastActivityDate();
+        boolean streakAlive = CompletionLog.dayKey(now).equals(lastDate)
+                || CompletionLog.dayKeyBefore(now, 1).equals(lastDate);
+        int streak = streakAlive ? userStats.getCurrentStreak() : 0;
         
         // Actualizar UI con estadísticas
-        updateStatisticsUI(totalActivities, completedToday, totalCompleted, 
-                          weeklyCompleted, weeklyTotal, monthlyCompleted, monthlyTotal);
+        updateStatisticsUI(totalActivities, completedToday,
+                          (int) weekCounter.completed, weeklyTotal, (int) monthCounter.completed, monthlyTotal,
+                          streak, monthCounter.lastCompletedAt);
     }
 
-    private void updateStatisticsUI(int total, int completedToday, int totalCompleted,
+    private void updateStatisticsUI(int total, int completedToday,
                                   int weeklyCompleted, int weeklyTotal, 
-                                  int monthlyCompleted, int monthlyTotal) {
+                                  int monthlyCompleted, int monthlyTotal,
+                                  int streak, long lastCompletedAt) {
         
         // Estadísticas básicas
         totalActivitiesText.setText(String.valueOf(total));
         completedTodayText.setText(String.valueOf(completedToday));
         
-        // Tasa de completación general
-        int completionRate = total > 0 ? (totalCompleted * 100) / total : 0;
+        // Tasa de completación de hoy
+        int completionRate = total > 0 ? Math.min(100, (completedToday * 100) / total) : 0;
         completionRateText.setText(completionRate + "%");
         completionProgressBar.setProgress(completionRate);
         
         // Estadísticas semanales
-        int weeklyRate = weeklyTotal > 0 ? (weeklyCompleted * 100) / weeklyTotal : 0;
+        int weeklyRate = weeklyTotal > 0 ? Math.min(100, (weeklyCompleted * 100) / weeklyTotal) : 0;
         weeklyCompletionText.setText(weeklyRate + "%");
         
         // Estadísticas mensuales
-        int monthlyRate = monthlyTotal > 0 ? (monthlyCompleted * 100) / monthlyTotal : 0;
+        int monthlyRate = monthlyTotal > 0 ? Math.min(100, (monthlyCompleted * 100) / monthlyTotal) : 0;
         monthlyCompletionText.setText(monthlyRate + "%");
         
-        // Racha (simulada)
-        int streak = calculateStreak(completedToday);
+        // Racha
         streakText.setText(streak + " días");
         
         // Última actividad
-        lastActivityText.setText("Hace 2 horas"); // Simulado
+        if (lastCompletedAt > 0) {
+            lastActivityText.setText(DateUtils.getRelativeTimeSpanString(lastCompletedAt,
+                    System.currentTimeMillis(), DateUtils.MINUTE_IN_MILLIS));
+        } else {
+            lastActivityText.setText("Sin actividad reciente");
+        }
         
-        // Mensaje de voz con resumen
-        String summary = "Resumen de estadísticas: " + completedToday + " actividades completadas hoy. " +
-                        "Tasa de completación general: " + completionRate + " por ciento. " +
-                        "Racha actual: " + streak + " días consecutivos.";
-        speakText(summary);
-    }
-
-    private int calculateStreak(int completedToday) {
-        // Simulación de racha - en implementación real calcularías días consecutivos
-        return completedToday > 0 ? 5 : 0;
+        // Mensaje de voz con resumen (una vez; luego los cambios solo actualizan la pantalla)
+        if (!summarySpoken) {
+            summarySpoken = true;
+            String summary = "Resumen de estadísticas: " + completedToday + " actividades completadas hoy. " +
+                            "Tasa de completación de hoy: " + completionRate + " por ciento. " +
+                            "Racha actual: " + streak + " días consecutivos.";
+            speakText(summary);
+        }
     }
 
     @Override
@@ -244,6 +306,8 @@ public class StatisticsActivity extends AppCompatActivity implements TextToSpeec
 
     @Override
     protected void onDestroy() {
+        unwatch(watchedRefs);
+        unwatch(rollupRefs);
         if (textToSpeech != null) {
             textToSpeech.stop();
             textToSpeech.shutdown();
@@ -10,14 +10,15 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
-
 import java.util.List;
 
 public class StepAdapter extends RecyclerView.Adapter<StepAdapter.StepViewHolder> {
 
+    private static final int PRELOAD_AHEAD = 6;
+
     private List<SequenceStep> stepsList;
     private OnStepActionListener listener;
+    private PictogramPreloader preloader;
 
     public interface OnStepActionListener {
         void onEditStep(SequenceStep step, int position);
@@ -52,12 +53,11 @@ public class StepAdapter extends RecyclerView.Adapter<StepAdapter.StepViewHolder
         
         // Cargar imagen del pictograma
         if (step.getPictogramId() > 0) {
-            String imageUrl = "https://api.arasaac.org/api/pictograms/" + step.getPictogramId() + "?download=false";
-            Glide.with(holder.itemView.getContext())
-                .load(imageUrl)
-                .placeholder(R.drawable.ic_placeholder)
-                .error(R.drawable.ic_error)
-                .into(holder.stepImageView);
+            if (preloader != null) {
+                preloader.trackView(holder.stepImageView);
+            }
+            PictogramImageLoader.load(holder.stepImageView, step.getPictogramId(),
+                    PictogramSize.THUMBNAIL, R.drawable.ic_placeholder, R.drawable.ic_error);
         } else {
             holder.stepImageView.setImageResource(R.drawable.ic_placeholder);
         }
@@ -76,6 +76,24 @@ public class StepAdapter extends RecyclerView.Adapter<StepAdapter.StepViewHolder
         });
     }
 
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        // Precargar las miniaturas de los próximos elementos mientras se hace scroll
+        // Mismo scaleType que la ImageView del layout del elemento
+        preloader = new PictogramPreloader(recyclerView, PictogramSize.THUMBNAIL, ImageView.ScaleType.CENTER_INSIDE, PRELOAD_AHEAD,
+                position -> stepsList != null && position < stepsList.size() ? stepsList.get(position).getPictogramId() : 0);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        if (preloader != null) {
+            preloader.detach();
+            preloader = null;
+        }
+        super.onDetachedFromRecyclerView(recyclerView);
+    }
+
     @Override
     public int getItemCount() {
         return stepsList != null ? stepsList.size() : 0;
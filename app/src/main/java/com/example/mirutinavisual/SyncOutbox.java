@@ -0,0 +1,219 @@
+package com.example.mirutinavisual;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.ValueEventListener;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.ToNumberPolicy;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Escrituras duraderas: cada updateChildren se guarda primero en la tabla outbox de
+// LocalRoutineStore y se borra cuando Firebase lo confirma (o lo rechaza). Si el proceso muere
+// sin conexión, al arrancar se reenvían en orden. Entrega "al menos una vez": las rutas son
+// idempotentes salvo los contadores con ServerValue.increment, que podrían sumar dos veces
+// si el proceso muere justo entre la confirmación y el borrado.
+// Cada fila recuerda si la persistencia de DatabaseBootstrap estaba activa al escribirla: en
+// ese caso Firebase ya la guarda y la reenvía él mismo, y reenviarla (aunque fuera sin los
+// contadores) podría pisar datos más nuevos o resucitar una actividad borrada después. Al
+// arrancar esas filas no se envían: solo se cuentan como pendientes hasta que se confirma una
+// escritura de control (outboxBarrier), que Firebase envía y confirma detrás de las suyas.
+public class SyncOutbox {
+
+    public interface SyncStateListener {
+        // pendingWrites: escrituras que Firebase aún no ha confirmado, también las de
+        // sesiones anteriores que siguen en el outbox
+        void onSyncStateChanged(int pendingWrites, boolean connected);
+    }
+
+    private static volatile SyncOutbox instance;
+
+    private final LocalRoutineStore localStore;
+    private final DatabaseReference rootRef;
+    // serializeNulls: un null en updates es un borrado y tiene que sobrevivir al JSON
+    private final Gson gson = new GsonBuilder()
+            .serializeNulls()
+            .setObjectToNumberStrategy(ToNumberPolicy.LONG_OR_DOUBLE)
+            .create();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<SyncStateListener> listeners = new CopyOnWriteArrayList<>();
+    // Solo desde el hilo principal
+    private int pendingWrites = 0;
+    private boolean connected = false;
+
+    public static SyncOutbox getInstance(Context context) {
+        if (instance == null) {
+            synchronized (SyncOutbox.class) {
+                if (instance == null) {
+                    instance = new SyncOutbox(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private SyncOutbox(Context appContext) {
+        this.localStore = LocalRoutineStore.getInstance(appContext);
+        this.rootRef = FirebaseDatabase.getInstance().getReference();
+        // Antes que cualquier escritura nueva: el hilo de disco es único y respeta el orden
+        localStore.runOnDiskThread(this::replayPending);
+
+        rootRef.child(".info/connected").addValueEventListener(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                Boolean value = snapshot.getValue(Boolean.class);
+                connected = value != null && value;
+                notifyListeners();
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                System.out.println("SYNC_OUTBOX: Error al leer la conexión: " + error.getMessage());
+            }
+        });
+    }
+
+    // El listener recibe el estado actual al registrarse. Usar desde el hilo principal
+    public void addSyncStateListener(SyncStateListener listener) {
+        listeners.add(listener);
+        listener.onSyncStateChanged(pendingWrites, connected);
+    }
+
+    public void removeSyncStateListener(SyncStateListener listener) {
+        listeners.remove(listener);
+    }
+
+    public int getPendingWrites() {
+        return pendingWrites;
+    }
+
+    // Como DatabaseReference.updateChildren desde la raíz, pero sin perderse si la app se cierra
+    public Task<Void> updateChildren(String userId, Map<String, Object> updates) {
+        TaskCompletionSource<Void> result = new TaskCompletionSource<>();
+        String json = gson.toJson(updates);
+        changePendingWrites(1);
+
+        localStore.runOnDiskThread(() -> {
+            long rowId = -1;
+            try {
+                ContentValues values = new ContentValues();
+                values.put("user_id", userId != null ? userId : "");
+                values.put("updates", json);
+                values.put("created_at", System.currentTimeMillis());
+                values.put("persisted", DatabaseBootstrap.isPersistenceEnabled() ? 1 : 0);
+                rowId = localStore.getDatabase().insert("outbox", null, values);
+            } catch (Exception e) {
+                // Sin disco se envía igual, solo que no sobreviviría a un cierre
+                System.out.println("SYNC_OUTBOX: No se pudo guardar la escritura: " + e.getMessage());
+            }
+            send(rowId, updates, result);
+        });
+        return result.getTask();
+    }
+
+    private void replayPending() {
+        boolean persistenceEnabled = DatabaseBootstrap.isPersistenceEnabled();
+        Type type = new TypeToken<Map<String, Object>>() {}.getType();
+        int replayed = 0;
+        List<Long> trackedRows = new ArrayList<>();
+        String barrierUserId = null;
+        try (Cursor cursor = localStore.getDatabase().query("outbox", new String[]{"id", "user_id", "updates", "persisted"},
+                null, null, null, null, "id")) {
+            while (cursor.moveToNext()) {
+                long rowId = cursor.getLong(0);
+                if (persistenceEnabled && cursor.getInt(3) == 1) {
+                    // Ya está en la cola de Firebase: no se vuelve a enviar
+                    trackedRows.add(rowId);
+                    if (!cursor.getString(1).isEmpty()) {
+                        barrierUserId = cursor.getString(1);
+                    }
+                    continue;
+                }
+                Map<String, Object> updates = gson.fromJson(cursor.getString(2), type);
+                replayed++;
+                changePendingWrites(1);
+                send(rowId, updates, new TaskCompletionSource<>());
+            }
+        } catch (Exception e) {
+            System.out.println("SYNC_OUTBOX: Error al leer pendientes: " + e.getMessage());
+        }
+        if (replayed > 0) {
+            System.out.println("SYNC_OUTBOX: Reenviando " + replayed + " escrituras de una sesión anterior");
+        }
+        if (!trackedRows.isEmpty()) {
+            System.out.println("SYNC_OUTBOX: " + trackedRows.size() + " escrituras anteriores siguen en la cola de Firebase");
+            trackPersisted(trackedRows, barrierUserId);
+        }
+    }
+
+    // Firebase confirma las escrituras en el orden en que las envía, y las que recupera de su
+    // caché van delante de cualquier escritura nueva: cuando la de control termina (aunque las
+    // reglas la rechacen, p. ej. si ha cambiado el usuario) las anteriores ya se han resuelto
+    private void trackPersisted(List<Long> rowIds, String userId) {
+        changePendingWrites(rowIds.size());
+        Runnable forget = () -> localStore.runOnDiskThread(() -> {
+            for (long rowId : rowIds) {
+                localStore.getDatabase().delete("outbox", "id = ?", new String[]{String.valueOf(rowId)});
+            }
+            changePendingWrites(-rowIds.size());
+        });
+        if (userId == null) {
+            // Filas sin usuario: no hay ruta de control con permisos, Firebase las sigue enviando
+            forget.run();
+            return;
+        }
+        rootRef.child(DatabasePaths.outboxBarrier(userId)).setValue(ServerValue.TIMESTAMP)
+                .addOnCompleteListener(task -> forget.run());
+    }
+
+    private void send(long rowId, Map<String, Object> updates, TaskCompletionSource<Void> result) {
+        rootRef.updateChildren(updates).addOnCompleteListener(task -> {
+            // Rechazada (p. ej. reglas): reintentar no serviría, se descarta igual
+            if (!task.isSuccessful()) {
+                System.out.println("SYNC_OUTBOX: Escritura rechazada: "
+                        + (task.getException() != null ? task.getException().getMessage() : "desconocido"));
+            }
+            if (rowId >= 0) {
+                localStore.runOnDiskThread(() -> localStore.getDatabase()
+                        .delete("outbox", "id = ?", new String[]{String.valueOf(rowId)}));
+            }
+            changePendingWrites(-1);
+            if (task.isSuccessful()) {
+                result.trySetResult(null);
+            } else {
+                result.trySetException(task.getException() != null
+                        ? task.getException() : new IllegalStateException("Escritura rechazada"));
+            }
+        });
+    }
+
+    private void changePendingWrites(int delta) {
+        mainHandler.post(() -> {
+            pendingWrites = Math.max(0, pendingWrites + delta);
+            notifyListeners();
+        });
+    }
+
+    private void notifyListeners() {
+        for (SyncStateListener listener : listeners) {
+            listener.onSyncStateChanged(pendingWrites, connected);
+        }
+    }
+}
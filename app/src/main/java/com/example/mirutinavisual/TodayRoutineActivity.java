@@ -3,6 +3,7 @@ package com.example.mirutinavisual;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.speech.tts.TextToSpeech;
 import android.view.View;
 import android.widget.ImageButton;
@@ -17,19 +18,14 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 
 public class TodayRoutineActivity extends AppCompatActivity implements TextToSpeech.OnInitListener {
 
@@ -38,21 +34,33 @@ public class TodayRoutineActivity extends AppCompatActivity implements TextToSpe
     private DatabaseReference databaseReference;
     
     private ImageButton backButton;
-    private TextView dateText, emptyStateSubtitle;
+    private TextView dateText, emptyStateSubtitle, syncStatusText;
     private LinearLayout emptyStateText;
     private CardView createRoutineButton;
     private RecyclerView activitiesRecyclerView;
     private ProgressBar loadingProgressBar;
     
     private ActivityAdapter activityAdapter;
+    // Lista ya entregada al adapter: se reemplaza, nunca se modifica
     private List<Activity> activitiesList;
+    // El resumen por voz solo se dice al cargar, no con cada cambio
+    private boolean countAnnounced = false;
+    // Tiempo hasta la primera lista pintada (TTFR), desde la copia local o desde Firebase
+    private long createdAtMs;
+    private boolean firstRenderLogged = false;
     
     // Sistema de logros
     private AchievementManager achievementManager;
+    
+    // Aviso de cambios sin sincronizar
+    private final SyncOutbox.SyncStateListener syncStateListener = this::updateSyncStatus;
+    
+    private final FrameTimeMonitor frameTimeMonitor = new FrameTimeMonitor("today_routine");
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        createdAtMs = SystemClock.elapsedRealtime();
         
         try {
             setContentView(R.layout.activity_today_routine);
@@ -114,6 +122,7 @@ public class TodayRoutineActivity extends AppCompatActivity implements TextToSpe
             dateText = findViewById(R.id.dateText);
             emptyStateText = findViewById(R.id.emptyStateText);
             emptyStateSubtitle = findViewById(R.id.emptyStateSubtitle);
+            syncStatusText = findViewById(R.id.syncStatusText);
             createRoutineButton = findViewById(R.id.createRoutineButton);
             activitiesRecyclerView = findViewById(R.id.activitiesRecyclerView);
             loadingProgressBar = findViewById(R.id.loadingProgressBar);
@@ -179,7 +188,7 @@ public class TodayRoutineActivity extends AppCompatActivity implements TextToSpe
             // Solo crear adapter si no existe
             if (activityAdapter == null) {
                 // Crear adapter con listener para abrir actividades
-                activityAdapter = new ActivityAdapter(activitiesList, new ActivityAdapter.OnActivityClickListener() {
+                activityAdapter = new ActivityAdapter(new ActivityAdapter.OnActivityClickListener() {
                     @Override
                     public void onActivityClick(Activity activity) {
                         openActivity(activity);
@@ -238,62 +247,60 @@ public class TodayRoutineActivity extends AppCompatActivity implements TextToSpe
         
         String userId = firebaseAuth.getCurrentUser().getUid();
         
-        databaseReference.child("activities")
-                .orderByChild("userId")
-                .equalTo(userId)
-                .addValueEventListener(new ValueEventListener() {
-                    @Override
-                    public void onDataChange(DataSnapshot dataSnapshot) {
-                        activitiesList.clear();
-                        
-                        for (DataSnapshot activitySnapshot : dataSnapshot.getChildren()) {
-                            Activity activity = createActivityFromSnapshot(activitySnapshot);
-                            if (activity != null) {
-                                activitiesList.add(activity);
-                            }
-                        }
-                        
-                        try {
-                            // Ordenar por hora
-                            Collections.sort(activitiesList, (a1, a2) -> a1.getTime().compareTo(a2.getTime()));
-                            
-                            // Actualizar adapter solo si existe
-                            if (activityAdapter != null) {
-                                activityAdapter.notifyDataSetChanged();
-                            }
-                            
-                            if (loadingProgressBar != null) {
-                                loadingProgressBar.setVisibility(View.GONE);
-                            }
-                            
-                            if (activitiesList.isEmpty()) {
-                                if (emptyStateText != null) {
-                                    emptyStateText.setVisibility(View.VISIBLE);
-                                }
-                                speakText("No tienes actividades programadas para hoy");
-                            } else {
-                                if (emptyStateText != null) {
-                                    emptyStateText.setVisibility(View.GONE);
-                                }
-                                speakText("Tienes " + activitiesList.size() + " actividades para hoy");
-                            }
-                        } catch (Exception e) {
-                            showToast("Error al mostrar actividades: " + e.getMessage());
-                        }
+        // Listener compartido con las demás pantallas; se suelta solo en onDestroy.
+        // La lista llega ya ordenada por hora desde el hilo del repositorio
+        ActivityRepository.getInstance(this).observe(this, userId, ActivityRepository.SORTED_BY_TIME,
+                new ActivityRepository.ActivitiesObserver() {
+            @Override
+            public void onActivitiesChanged(List<Activity> sorted) {
+                try {
+                    activitiesList = sorted;
+                    
+                    // DiffUtil solo redibuja las filas que cambiaron
+                    if (activityAdapter != null) {
+                        activityAdapter.submitList(sorted);
                     }
-
-                    @Override
-                    public void onCancelled(DatabaseError databaseError) {
-                        if (loadingProgressBar != null) {
-                            loadingProgressBar.setVisibility(View.GONE);
-                        }
-                        if (emptyStateText != null) {
-                            emptyStateText.setVisibility(View.VISIBLE);
+                    
+                    if (loadingProgressBar != null) {
+                        loadingProgressBar.setVisibility(View.GONE);
+                    }
+                    
+                    if (emptyStateText != null) {
+                        emptyStateText.setVisibility(activitiesList.isEmpty() ? View.VISIBLE : View.GONE);
+                    }
+                    
+                    if (!firstRenderLogged) {
+                        firstRenderLogged = true;
+                        System.out.println("TTFR: " + (SystemClock.elapsedRealtime() - createdAtMs) + " ms ("
+                                + (ActivityRepository.getInstance(TodayRoutineActivity.this).isFromLocalMirror(userId)
+                                        ? "copia local" : "Firebase") + ", " + sorted.size() + " actividades)");
+                    }
+                    
+                    if (!countAnnounced) {
+                        countAnnounced = true;
+                        if (activitiesList.isEmpty()) {
+                            speakText("No tienes actividades programadas para hoy");
+                        } else {
+                            speakText("Tienes " + activitiesList.size() + " actividades para hoy");
                         }
-                        speakText("Error al cargar las actividades");
-                        showToast("Error: " + databaseError.getMessage());
                     }
-                });
+                } catch (Exception e) {
+                    showToast("Error al mostrar actividades: " + e.getMessage());
+                }
+            }
+
+            @Override
+            public void onError(String error) {
+                if (loadingProgressBar != null) {
+                    loadingProgressBar.setVisibility(View.GONE);
+                }
+                if (emptyStateText != null) {
+                    emptyStateText.setVisibility(View.VISIBLE);
+                }
+                speakText("Error al cargar las actividades");
+                showToast("Error: " + error);
+            }
+        });
     }
 
     private void showActivityDetail(Activity activity) {
@@ -303,22 +310,6 @@ public class TodayRoutineActivity extends AppCompatActivity implements TextToSpe
         showToast("Actividad: " + activity.getName());
     }
 
-    private void markActivityAsCompleted(Activity activity) {
-        if (activity.getId() == null) return;
-        
-        // Actualizar estado en Firebase
-        databaseReference.child("activities").child(activity.getId())
-                .child("completed").setValue(true)
-                .addOnSuccessListener(aVoid -> {
-                    speakText("¡Muy bien! Actividad completada: " + activity.getName());
-                    showToast("¡Actividad completada! 🎉");
-                })
-                .addOnFailureListener(e -> {
-                    speakText("Error al marcar como completada");
-                    showToast("Error al actualizar");
-                });
-    }
-
     private void speakActivityDetails(Activity activity) {
         String message = "Actividad: " + activity.getName() + 
                         ". Hora programada: " + activity.getTime();
@@ -357,120 +348,15 @@ public class TodayRoutineActivity extends AppCompatActivity implements TextToSpe
         Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
     
-    // Método para crear Activity desde DataSnapshot incluyendo pasos personalizados
-    private Activity createActivityFromSnapshot(DataSnapshot activitySnapshot) {
-        try {
-            Activity activity = activitySnapshot.getValue(Activity.class);
-            if (activity != null) {
-                activity.setId(activitySnapshot.getKey());
-                
-                // Cargar pasos personalizados si existen
-                Boolean isSequence = activitySnapshot.child("isSequence").getValue(Boolean.class);
-                Object stepsData = activitySnapshot.child("steps").getValue();
-                
-                System.out.println("TODAY_LOAD: Actividad " + activity.getName() + 
-                                 " - isSequence: " + isSequence + 
-                                 " - tiene pasos: " + (stepsData != null));
-                
-                if (isSequence != null && isSequence && stepsData != null) {
-                    // Cargar pasos personalizados
-                    List<SequenceStep> customSteps = loadStepsFromSnapshot(stepsData);
-                    if (!customSteps.isEmpty()) {
-                        activity.setSequence(true);
-                        activity.setSteps(customSteps);
-                        System.out.println("TODAY_LOAD: Cargados " + customSteps.size() + 
-                                         " pasos para " + activity.getName());
-                    }
-                } else {
-                    System.out.println("TODAY_LOAD: " + activity.getName() + 
-                                     " usará secuencia automática");
-                }
-            }
-            return activity;
-        } catch (Exception e) {
-            System.out.println("TODAY_LOAD: Error al crear actividad desde snapshot: " + e.getMessage());
-            return null;
-        }
-    }
-    
-    // Método para cargar pasos desde DataSnapshot
-    private List<SequenceStep> loadStepsFromSnapshot(Object stepsData) {
-        List<SequenceStep> steps = new ArrayList<>();
-        
-        try {
-            if (stepsData instanceof List) {
-                List<?> stepsList = (List<?>) stepsData;
-                
-                for (Object stepObj : stepsList) {
-                    if (stepObj instanceof Map) {
-                        Map<?, ?> stepMap = (Map<?, ?>) stepObj;
-                        
-                        SequenceStep step = new SequenceStep();
-                        step.setId(getStringValue(stepMap, "id"));
-                        step.setName(getStringValue(stepMap, "name"));
-                        step.setDescription(getStringValue(stepMap, "description"));
-                        step.setPictogramId((int) getLongValue(stepMap, "pictogramId"));
-                        step.setPictogramKeyword(getStringValue(stepMap, "pictogramKeyword"));
-                        step.setStepNumber(getIntValue(stepMap, "stepNumber"));
-                        step.setCompleted(getBooleanValue(stepMap, "completed"));
-                        step.setAudioText(getStringValue(stepMap, "audioText"));
-                        
-                        steps.add(step);
-                    }
-                }
-                
-                // Ordenar por número de paso
-                steps.sort((s1, s2) -> Integer.compare(s1.getStepNumber(), s2.getStepNumber()));
-            }
-        } catch (Exception e) {
-            System.out.println("TODAY_LOAD: Error al cargar pasos: " + e.getMessage());
-        }
-        
-        return steps;
-    }
-    
-    // Métodos auxiliares para extraer datos de Map de forma segura
-    private String getStringValue(Map<?, ?> map, String key) {
-        Object value = map.get(key);
-        return value != null ? value.toString() : "";
-    }
-    
-    private long getLongValue(Map<?, ?> map, String key) {
-        Object value = map.get(key);
-        if (value instanceof Number) {
-            return ((Number) value).longValue();
-        }
-        return 0;
-    }
-    
-    private int getIntValue(Map<?, ?> map, String key) {
-        Object value = map.get(key);
-        if (value instanceof Number) {
-            return ((Number) value).intValue();
-        }
-        return 0;
-    }
-    
-    private boolean getBooleanValue(Map<?, ?> map, String key) {
-        Object value = map.get(key);
-        if (value instanceof Boolean) {
-            return (Boolean) value;
-        }
-        return false;
-    }
-    
     // Método para abrir una actividad (modo secuencia o normal)
     private void openActivity(Activity activity) {
         try {
             speakText("Abriendo " + activity.getName());
             
             // Verificar si es una secuencia
-            if (activity.isSequence() && activity.getTotalSteps() > 0) {
-                // Abrir modo secuencia
-                Intent intent = new Intent(this, SequenceActivity.class);
-                intent.putExtra("activity_json", new com.google.gson.Gson().toJson(activity));
-                startActivity(intent);
-                System.out.println("TODAY: Abriendo modo secuencia para: " + activity.getName());
+            if (activity.isSequence()) {
+                // La lista solo tiene la cabecera: traer los pasos ahora
+                openSequence(activity);
             } else {
                 // Para actividades normales, crear una secuencia simple de ejemplo
                 createSimpleSequence(activity);
@@ -482,10 +368,60 @@ public class TodayRoutineActivity extends AppCompatActivity implements TextToSpe
         }
     }
     
+    private void openSequence(Activity activity) {
+        if (firebaseAuth.getCurrentUser() == null) return;
+        
+        String userId = firebaseAuth.getCurrentUser().getUid();
+        ActivityStepsStore.getInstance(this).loadSteps(userId, activity.getId(), new ActivityStepsStore.StepsCallback() {
+            @Override
+            public void onStepsLoaded(List<SequenceStep> steps) {
+                if (isFinishing() || isDestroyed()) return;
+                
+                if (steps.isEmpty()) {
+                    createSimpleSequence(activity);
+                    return;
+                }
+                
+                // Copia: la actividad de la lista la comparten otras pantallas
+                Activity sequence = copyHeader(activity);
+                sequence.setSequence(true);
+                sequence.setSteps(steps);
+                
+                Intent intent = new Intent(TodayRoutineActivity.this, SequenceActivity.class);
+                intent.putExtra("activity_json", new com.google.gson.Gson().toJson(sequence));
+                startActivity(intent);
+                System.out.println("TODAY: Abriendo modo secuencia para: " + activity.getName()
+                        + " (" + steps.size() + " pasos)");
+            }
+            
+            @Override
+            public void onStepsError(String error) {
+                if (isFinishing() || isDestroyed()) return;
+                showToast("No se pudieron cargar los pasos");
+                createSimpleSequence(activity);
+            }
+        });
+    }
+    
+    private Activity copyHeader(Activity activity) {
+        Activity copy = new Activity();
+        copy.setId(activity.getId());
+        copy.setName(activity.getName());
+        copy.setTime(activity.getTime());
+        copy.setPictogramId(activity.getPictogramId());
+        copy.setPictogramKeyword(activity.getPictogramKeyword());
+        copy.setCompleted(activity.isCompleted());
+        copy.setCreatedAt(activity.getCreatedAt());
+        copy.setUserId(activity.getUserId());
+        copy.setCurrentStepIndex(activity.getCurrentStepIndex());
+        return copy;
+    }
+    
     // Crear secuencia simple para actividades normales
     private void createSimpleSequence(Activity activity) {
         try {
-            // Convertir actividad normal en secuencia de un paso
+            // Convertir actividad normal en secuencia de un paso (sobre una copia)
+            activity = copyHeader(activity);
             activity.setSequence(true);
             
             SequenceStep step = new SequenceStep();
@@ -515,33 +451,27 @@ public class TodayRoutineActivity extends AppCompatActivity implements TextToSpe
     // Método para completar una actividad
     private void completeActivity(Activity activity) {
         try {
-            activity.setCompleted(true);
+            if (achievementManager == null || firebaseAuth.getCurrentUser() == null) return;
             
-            // Actualizar en Firebase
-            if (databaseReference != null && firebaseAuth.getCurrentUser() != null) {
-                databaseReference.child("activities").child(activity.getId())
-                    .child("completed").setValue(true)
-                    .addOnSuccessListener(aVoid -> {
+            // Actividad al outbox local al momento, estadísticas en transacción y luego logros; el cambio vuelve
+            // por el repositorio y solo se redibuja esa fila
+            achievementManager.commitActivityCompletion(activity.getId(), new AchievementManager.OnCompletionCommittedListener() {
+                @Override
+                public void onCompletionCommitted(List<Achievement> newAchievements) {
+                    // Si hay logro nuevo, su anuncio por voz tiene prioridad
+                    if (newAchievements.isEmpty()) {
                         speakText("¡Actividad " + activity.getName() + " completada! ¡Muy bien!");
-                        showToast("✅ ¡Actividad completada!");
-                        
-                        // Actualizar la lista
-                        if (activityAdapter != null) {
-                            activityAdapter.notifyDataSetChanged();
-                        }
-                        
-                        // *** VERIFICAR LOGROS ***
-                        if (achievementManager != null) {
-                            achievementManager.onActivityCompleted();
-                        }
-                        
-                        System.out.println("TODAY: Actividad completada: " + activity.getName());
-                    })
-                    .addOnFailureListener(e -> {
-                        System.out.println("TODAY: Error al completar actividad: " + e.getMessage());
-                        showToast("Error al completar la actividad");
-                    });
-            }
+                    }
+                    showToast("✅ ¡Actividad completada!");
+                    System.out.println("TODAY: Actividad completada: " + activity.getName());
+                }
+                
+                @Override
+                public void onCompletionFailed(String error) {
+                    System.out.println("TODAY: Error al completar actividad: " + error);
+                    showToast("Error al completar la actividad");
+                }
+            });
             
         } catch (Exception e) {
             System.out.println("TODAY: Error al completar actividad: " + e.getMessage());
@@ -570,6 +500,34 @@ public class TodayRoutineActivity extends AppCompatActivity implements TextToSpe
         }
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        SyncOutbox.getInstance(this).addSyncStateListener(syncStateListener);
+        frameTimeMonitor.start(this);
+    }
+    
+    @Override
+    protected void onStop() {
+        SyncOutbox.getInstance(this).removeSyncStateListener(syncStateListener);
+        frameTimeMonitor.stop();
+        super.onStop();
+    }
+    
+    private void updateSyncStatus(int pendingWrites, boolean connected) {
+        if (syncStatusText == null) return;
+        
+        // Sin pendientes no se avisa: al abrir, .info/connected empieza en false un momento
+        if (pendingWrites > 0) {
+            syncStatusText.setText(connected
+                    ? "Sincronizando " + pendingWrites + " cambios..."
+                    : "Sin conexión: " + pendingWrites + " cambios guardados en el teléfono");
+            syncStatusText.setVisibility(View.VISIBLE);
+        } else {
+            syncStatusText.setVisibility(View.GONE);
+        }
+    }
+    
     @Override
     protected void onDestroy() {
         if (textToSpeech != null) {
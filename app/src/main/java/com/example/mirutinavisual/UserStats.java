@@ -5,6 +5,8 @@ import java.util.Date;
 import java.util.Locale;
 
 public class UserStats {
+    public static final int POINTS_PER_ACTIVITY = 10;
+
     private String userId;
     private int totalActivitiesCompleted;
     private int activitiesCompletedToday;
@@ -31,11 +33,30 @@ public class UserStats {
 
     // Método para actualizar estadísticas cuando se completa una actividad
     public void onActivityCompleted() {
-        String today = getCurrentDateString();
-        
+        onActivityCompleted(System.currentTimeMillis());
+    }
+
+    // completedAt puede ser de otro día si la completada se aplica más tarde (sin conexión)
+    public void onActivityCompleted(long completedAt) {
         // Incrementar totales
         totalActivitiesCompleted++;
-        totalPoints += 10; // 10 puntos por actividad
+        totalPoints += POINTS_PER_ACTIVITY;
+        applyDayProgress(completedAt);
+    }
+
+    // Solo el contador del día y la racha (los totales se suman aparte con ServerValue.increment)
+    public void applyDayProgress(long completedAt) {
+        String today = formatDate(new Date(completedAt));
+        // Un nodo guardado sin este campo llega como null desde Firebase
+        if (lastActivityDate == null) {
+            lastActivityDate = "";
+        }
+        
+        // Anterior al último día registrado: solo cuenta en los totales, la racha no se toca
+        if (!lastActivityDate.isEmpty() && today.compareTo(lastActivityDate) < 0) {
+            System.out.println("STATS: Completada de un día anterior (" + today + "), la racha no cambia");
+            return;
+        }
         
         // Verificar si es el primer completado del día
         if (!today.equals(lastActivityDate)) {
@@ -61,8 +82,8 @@ public class UserStats {
             activitiesCompletedToday++;
         }
         
-        System.out.println("STATS: Actividad completada - Total: " + totalActivitiesCompleted + 
-                         ", Hoy: " + activitiesCompletedToday + ", Racha: " + currentStreak);
+        System.out.println("STATS: Actividad completada - Hoy: " + activitiesCompletedToday
+                + ", Racha: " + currentStreak);
     }
 
     // Verificar si dos fechas son días consecutivos
@@ -88,8 +109,12 @@ public class UserStats {
 
     // Obtener fecha actual como string
     private String getCurrentDateString() {
+        return formatDate(new Date());
+    }
+
+    private static String formatDate(Date date) {
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        return sdf.format(new Date());
+        return sdf.format(date);
     }
 
     // Resetear contador diario (llamar al cambio de día)
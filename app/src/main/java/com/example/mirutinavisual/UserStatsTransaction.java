@@ -0,0 +1,86 @@
+package com.example.mirutinavisual;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.Transaction;
+
+import java.util.Map;
+
+// Estadísticas de una completada en userStats/<uid>. Los totales (completadas, puntos, logros)
+// son sumas: van con ServerValue.increment en la misma escritura que la completada
+// (addCounterIncrements). Solo el contador del día y la racha dependen del valor anterior:
+// esos se calculan en esta transacción. Si otro dispositivo escribió antes, el servidor
+// rechaza el valor y doTransaction se repite sobre el dato actual.
+public class UserStatsTransaction implements Transaction.Handler {
+
+    public interface OnStatsCommittedListener {
+        void onStatsCommitted(UserStats stats);
+        void onStatsFailed(String error);
+    }
+
+    private final String userId;
+    private final long completedAt;
+    private final OnStatsCommittedListener listener;
+
+    private int attempts = 0;
+
+    public UserStatsTransaction(String userId, OnStatsCommittedListener listener) {
+        this(userId, System.currentTimeMillis(), listener);
+    }
+
+    // completedAt: momento de la completada, que puede aplicarse en un arranque posterior
+    public UserStatsTransaction(String userId, long completedAt, OnStatsCommittedListener listener) {
+        this.userId = userId;
+        this.completedAt = completedAt;
+        this.listener = listener;
+    }
+
+    // Rutas desde la raíz con las sumas de una completada y newAchievements logros nuevos
+    public static void addCounterIncrements(Map<String, Object> updates, String userId, int newAchievements) {
+        String statsPath = "userStats/" + userId;
+        updates.put(statsPath + "/userId", userId);
+        updates.put(statsPath + "/totalActivitiesCompleted", ServerValue.increment(1));
+        updates.put(statsPath + "/totalPoints", ServerValue.increment(UserStats.POINTS_PER_ACTIVITY));
+        if (newAchievements > 0) {
+            updates.put(statsPath + "/unlockedAchievements", ServerValue.increment(newAchievements));
+        }
+    }
+
+    @Override
+    public Transaction.Result doTransaction(MutableData currentData) {
+        attempts++;
+
+        // Sin caché local el primer intento llega vacío; el servidor lo corrige si ya existía.
+        // Los totales se escriben tal como se leyeron: si un incremento llega entremedias,
+        // el servidor rechaza este valor y se repite
+        UserStats stats = SnapshotCodec.readUserStats(currentData.getValue());
+        if (stats == null) {
+            stats = new UserStats(userId);
+        }
+
+        stats.applyDayProgress(completedAt);
+        currentData.setValue(SnapshotCodec.writeUserStats(stats));
+        return Transaction.success(currentData);
+    }
+
+    @Override
+    public void onComplete(DatabaseError error, boolean committed, DataSnapshot currentData) {
+        if (attempts > 1) {
+            System.out.println("STATS: Transacción repetida " + attempts + " veces por escrituras concurrentes");
+        }
+
+        if (error != null || !committed || currentData == null) {
+            String message = error != null ? error.getMessage() : "Transacción no confirmada";
+            System.out.println("STATS: Error al guardar estadísticas: " + message);
+            if (listener != null) listener.onStatsFailed(message);
+            return;
+        }
+
+        UserStats committedStats = SnapshotCodec.readUserStats(currentData.getValue());
+        if (listener != null) {
+            listener.onStatsCommitted(committedStats != null ? committedStats : new UserStats(userId));
+        }
+    }
+}
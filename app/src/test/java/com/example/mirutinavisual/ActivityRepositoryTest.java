@@ -0,0 +1,31 @@
+package com.example.mirutinavisual;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ActivityRepositoryTest {
+
+    @Test
+    public void sortedByTime_ordersByHourWithMissingTimesLast() {
+        List<Activity> activities = Arrays.asList(activity("a", "20:00"), activity("b", null), activity("c", "07:30"));
+
+        List<Activity> sorted = ActivityRepository.SORTED_BY_TIME.apply(activities);
+
+        assertEquals("c", sorted.get(0).getId());
+        assertEquals("a", sorted.get(1).getId());
+        assertEquals("b", sorted.get(2).getId());
+        // La lista del repositorio no se toca
+        assertEquals("a", activities.get(0).getId());
+    }
+
+    private static Activity activity(String id, String time) {
+        Activity activity = new Activity();
+        activity.setId(id);
+        activity.setTime(time);
+        return activity;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.mirutinavisual;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ActivityStepsStoreTest {
+
+    @Test
+    public void buildSaveUpdates_newActivityWritesHeaderAndStepsSeparately() {
+        Map<String, Object> header = new HashMap<>();
+        header.put("name", "Lavarse los dientes");
+        List<SequenceStep> steps = new ArrayList<>(SnapshotCodec.readSteps(
+                Arrays.asList(stepMap("a", 1, false), stepMap("b", 2, false))));
+
+        Map<String, Object> updates = ActivityStepsStore.buildSaveUpdates("uid1", "act1", header, steps, true);
+
+        assertSame(header, updates.get("userActivities/uid1/act1"));
+        assertFalse(header.containsKey("steps"));
+        assertEquals(2, ((List<?>) updates.get("userActivitySteps/uid1/act1")).size());
+    }
+
+    @Test
+    public void buildSaveUpdates_editWritesOnlyGivenFieldsAndClearsSteps() {
+        Map<String, Object> header = new HashMap<>();
+        header.put("name", "Vestirse");
+
+        Map<String, Object> updates = ActivityStepsStore.buildSaveUpdates("uid1", "act1", header, new ArrayList<>(), false);
+
+        assertEquals("Vestirse", updates.get("userActivities/uid1/act1/name"));
+        assertFalse(updates.containsKey("userActivities/uid1/act1"));
+        assertTrue(updates.containsKey("userActivitySteps/uid1/act1"));
+        assertNull(updates.get("userActivitySteps/uid1/act1"));
+    }
+
+    @Test
+    public void buildSaveUpdates_editMovesLegacyActivity() {
+        Map<String, Object> header = new HashMap<>();
+        header.put("name", "Vestirse");
+
+        Map<String, Object> updates = ActivityStepsStore.buildSaveUpdates("uid1", "act1", header, new ArrayList<>(), false);
+
+        assertTrue(updates.containsKey("activities/act1"));
+        assertNull(updates.get("activities/act1"));
+        assertTrue(updates.containsKey("activitySteps/act1"));
+        assertNull(updates.get("activitySteps/act1"));
+    }
+
+    @Test
+    public void buildSaveUpdates_newActivityDoesNotTouchLegacyNodes() {
+        Map<String, Object> updates = ActivityStepsStore.buildSaveUpdates("uid1", "act1", new HashMap<>(), null, true);
+
+        assertFalse(updates.containsKey("activities/act1"));
+        assertFalse(updates.containsKey("activitySteps/act1"));
+    }
+
+    @Test
+    public void buildDeleteUpdates_removesEveryCopy() {
+        Map<String, Object> updates = ActivityStepsStore.buildDeleteUpdates("uid1", "act1");
+
+        for (String path : Arrays.asList("userActivities/uid1/act1", "userActivitySteps/uid1/act1",
+                "activities/act1", "activitySteps/act1")) {
+            assertTrue(path, updates.containsKey(path));
+            assertNull(updates.get(path));
+        }
+    }
+
+    @Test
+    public void stepCompletedPath_followsHeaderCopy() {
+        assertEquals("userActivitySteps/uid1/act1/2/completed",
+                ActivityStepsStore.stepCompletedPath("uid1", "act1", "userActivities/uid1/act1", 2));
+        assertEquals("activities/act1/steps/2/completed",
+                ActivityStepsStore.stepCompletedPath("uid1", "act1", "activities/act1", 2));
+    }
+
+    private static Map<String, Object> stepMap(String id, long stepNumber, boolean completed) {
+        Map<String, Object> step = new HashMap<>();
+        step.put("id", id);
+        step.put("name", "Paso " + id);
+        step.put("pictogramId", 100L + stepNumber);
+        step.put("stepNumber", stepNumber);
+        step.put("completed", completed);
+        return step;
+    }
+}
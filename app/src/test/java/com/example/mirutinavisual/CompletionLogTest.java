@@ -0,0 +1,41 @@
+package com.example.mirutinavisual;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import static org.junit.Assert.*;
+
+public class CompletionLogTest {
+
+    @Test
+    public void dayKeyBefore_crossesMonthAndYear() {
+        long newYear = timeOf(2025, Calendar.JANUARY, 1);
+
+        assertEquals("2025-01-01", CompletionLog.dayKey(newYear));
+        assertEquals("2024-12-31", CompletionLog.dayKeyBefore(newYear, 1));
+        assertEquals("2024-12-03", CompletionLog.dayKeyBefore(newYear, 29));
+    }
+
+    @Test
+    public void dayKeys_sortLikeDates() {
+        // Las consultas por rango dependen de que el orden de texto sea el de las fechas
+        String september = CompletionLog.dayKey(timeOf(2024, Calendar.SEPTEMBER, 30));
+        String october = CompletionLog.dayKey(timeOf(2024, Calendar.OCTOBER, 1));
+
+        assertTrue(september.compareTo(october) < 0);
+    }
+
+    @Test
+    public void entryPath_isPartitionedByUserAndDay() {
+        assertEquals("completions/uid1/2024-10-01/act1",
+                CompletionLog.entryPath("uid1", "2024-10-01", "act1"));
+    }
+
+    private static long timeOf(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day, 12, 0);
+        return calendar.getTimeInMillis();
+    }
+}
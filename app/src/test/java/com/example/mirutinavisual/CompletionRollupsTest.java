@@ -0,0 +1,56 @@
+package com.example.mirutinavisual;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CompletionRollupsTest {
+
+    @Test
+    public void weekKey_usesIsoWeekYear() {
+        // Lunes 30/12/2024 ya es la semana 1 de 2025; domingo 03/01/2021 aún es la 53 de 2020
+        assertEquals("2025-W01", CompletionRollups.weekKey(timeOf(2024, Calendar.DECEMBER, 30)));
+        assertEquals("2020-W53", CompletionRollups.weekKey(timeOf(2021, Calendar.JANUARY, 3)));
+        assertEquals("2024-W40", CompletionRollups.weekKey(timeOf(2024, Calendar.OCTOBER, 6)));
+    }
+
+    @Test
+    public void daysElapsedInWeek_startsOnMonday() {
+        assertEquals(1, CompletionRollups.daysElapsedInWeek(timeOf(2024, Calendar.SEPTEMBER, 30)));
+        assertEquals(7, CompletionRollups.daysElapsedInWeek(timeOf(2024, Calendar.OCTOBER, 6)));
+    }
+
+    @Test
+    public void addIncrements_touchesDayWeekAndMonth() {
+        long time = timeOf(2024, Calendar.OCTOBER, 1);
+        Map<String, Object> updates = new HashMap<>();
+
+        CompletionRollups.addIncrements(updates, "uid1", time, 1);
+
+        assertTrue(updates.containsKey("rollups/uid1/day/2024-10-01/completed"));
+        assertTrue(updates.containsKey("rollups/uid1/week/2024-W40/completed"));
+        assertTrue(updates.containsKey("rollups/uid1/month/2024-10/completed"));
+        assertEquals(time, updates.get("rollups/uid1/month/2024-10/lastCompletedAt"));
+    }
+
+    @Test
+    public void millisUntilNextDay_landsOnTheNextDayKey() {
+        long noon = timeOf(2024, Calendar.OCTOBER, 31);
+        long midnight = noon + CompletionRollups.millisUntilNextDay(noon);
+
+        assertEquals("2024-11-01", CompletionLog.dayKey(midnight));
+        assertEquals("2024-10-31", CompletionLog.dayKey(midnight - 1));
+        assertEquals("2024-11", CompletionRollups.monthKey(midnight));
+    }
+
+    private static long timeOf(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day, 12, 0);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.mirutinavisual;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PictogramCatalogIndexTest {
+
+    private PictogramCatalogIndex buildIndex() {
+        Map<Integer, String[]> catalog = new HashMap<>();
+        catalog.put(1, new String[]{"cepillarse los dientes"});
+        catalog.put(2, new String[]{"camión", "vehículo"});
+        catalog.put(3, new String[]{"dientes"});
+        catalog.put(4, new String[]{"niño"});
+        return PictogramCatalogIndex.build(catalog);
+    }
+
+    @Test
+    public void search_ignoresCaseAndAccents() {
+        List<Pictogram> results = buildIndex().search("CAMION", 12);
+        assertEquals(1, results.size());
+        assertEquals(2, results.get(0).getId());
+        assertEquals("camión", results.get(0).getKeywords().get(0));
+    }
+
+    @Test
+    public void search_exactPhraseComesFirst() {
+        List<Pictogram> results = buildIndex().search("dientes", 12);
+        assertEquals(2, results.size());
+        assertEquals(3, results.get(0).getId());
+    }
+
+    @Test
+    public void search_matchesEveryTokenByPrefix() {
+        List<Pictogram> results = buildIndex().search("cepi dien", 12);
+        assertEquals(1, results.size());
+        assertEquals(1, results.get(0).getId());
+    }
+
+    @Test
+    public void search_keepsEnieDistinctFromN() {
+        PictogramCatalogIndex index = buildIndex();
+        assertEquals(1, index.search("niñ", 12).size());
+        assertTrue(index.search("nin", 12).isEmpty());
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.mirutinavisual;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PictogramSearchCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void buildKey_normalizesTermAndLocale() {
+        assertEquals(PictogramSearchCache.buildKey("comer", "es"),
+                PictogramSearchCache.buildKey("  Comer  ", "ES"));
+        assertNotEquals(PictogramSearchCache.buildKey("comer", "es"),
+                PictogramSearchCache.buildKey("comer", "en"));
+    }
+
+    @Test
+    public void put_thenGetFromDiskAfterMemoryCleared() throws Exception {
+        File dir = temporaryFolder.newFolder("search");
+        PictogramSearchCache cache = new PictogramSearchCache(dir);
+        String key = PictogramSearchCache.buildKey("comer", "es");
+
+        cache.put(key, Arrays.asList(new Pictogram(2349, Collections.singletonList("comer"))));
+        cache.clearMemory();
+
+        assertNull(cache.getFromMemory(key));
+        List<Pictogram> result = cache.get(key);
+        assertNotNull(result);
+        assertEquals(1, result.size());
+        assertEquals(2349, result.get(0).getId());
+        assertEquals("comer", result.get(0).getKeywords().get(0));
+    }
+
+    @Test
+    public void expiredEntry_isOnlyServedAsStale() throws Exception {
+        File dir = temporaryFolder.newFolder("stale");
+        PictogramSearchCache cache = new PictogramSearchCache(dir, -1, 8, 1024 * 1024);
+        String key = PictogramSearchCache.buildKey("agua", "es");
+
+        cache.put(key, Arrays.asList(new Pictogram(2248, Collections.singletonList("agua"))));
+
+        assertNull(cache.get(key));
+        assertNotNull(cache.getStale(key));
+    }
+
+    @Test
+    public void memoryCache_evictsLeastRecentlyUsed() {
+        PictogramSearchCache cache = new PictogramSearchCache(null,
+                PictogramSearchCache.DEFAULT_TTL_MS, 2, 0);
+        String a = PictogramSearchCache.buildKey("a", "es");
+        String b = PictogramSearchCache.buildKey("b", "es");
+        String c = PictogramSearchCache.buildKey("c", "es");
+
+        cache.put(a, Collections.emptyList());
+        cache.put(b, Collections.emptyList());
+        cache.getFromMemory(a);
+        cache.put(c, Collections.emptyList());
+
+        assertNotNull(cache.getFromMemory(a));
+        assertNull(cache.getFromMemory(b));
+        assertNotNull(cache.getFromMemory(c));
+    }
+}
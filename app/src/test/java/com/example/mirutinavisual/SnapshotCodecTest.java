@@ -0,0 +1,174 @@
+package com.example.mirutinavisual;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SnapshotCodecTest {
+
+    @Test
+    public void readSteps_sortsByStepNumberAndKeepsStorageIndex() {
+        List<Object> stored = Arrays.asList(stepMap("b", 2, true), null, stepMap("a", 1, false));
+
+        List<SequenceStep> steps = SnapshotCodec.readSteps(stored);
+
+        assertEquals(2, steps.size());
+        assertEquals("a", steps.get(0).getId());
+        assertEquals(2, steps.get(0).getStorageIndex());
+        assertEquals("b", steps.get(1).getId());
+        assertEquals(0, steps.get(1).getStorageIndex());
+        assertTrue(steps.get(1).isCompleted());
+    }
+
+    @Test
+    public void readSteps_readsSparseArrayStoredAsMap() {
+        Map<String, Object> stored = new HashMap<>();
+        stored.put("10", stepMap("c", 3, false));
+        stored.put("2", stepMap("b", 2, true));
+        stored.put("0", stepMap("a", 1, false));
+        stored.put("nota", stepMap("x", 4, false));
+
+        List<SequenceStep> steps = SnapshotCodec.readSteps(stored);
+
+        assertEquals(3, steps.size());
+        assertEquals("a", steps.get(0).getId());
+        assertEquals(0, steps.get(0).getStorageIndex());
+        assertEquals("b", steps.get(1).getId());
+        assertEquals(2, steps.get(1).getStorageIndex());
+        assertTrue(steps.get(1).isCompleted());
+        assertEquals("c", steps.get(2).getId());
+        assertEquals(10, steps.get(2).getStorageIndex());
+    }
+
+    @Test
+    public void readSteps_unknownFormatGivesEmptyList() {
+        assertTrue(SnapshotCodec.readSteps(null).isEmpty());
+        assertTrue(SnapshotCodec.readSteps("pasos").isEmpty());
+    }
+
+    @Test
+    public void writeStep_roundTripsThroughReadStep() {
+        SequenceStep step = new SequenceStep("s1", "Abrir el grifo", "Con la mano", 2350, "grifo", 3);
+        step.setCompleted(true);
+
+        SequenceStep read = SnapshotCodec.readStep(SnapshotCodec.writeStep(step), 4);
+
+        assertEquals("s1", read.getId());
+        assertEquals("Abrir el grifo. Con la mano", read.getAudioText());
+        assertEquals(2350, read.getPictogramId());
+        assertEquals(3, read.getStepNumber());
+        assertTrue(read.isCompleted());
+        assertEquals(4, read.getStorageIndex());
+    }
+
+    @Test
+    public void readActivity_readsHeaderWithFirebaseNumberTypes() {
+        Map<String, Object> header = new HashMap<>();
+        header.put("name", "Desayunar");
+        header.put("time", "08:00");
+        header.put("pictogramId", 2349L);
+        header.put("createdAt", 1700000000000L);
+        header.put("completed", true);
+        header.put("isSequence", true);
+        header.put("currentStepIndex", 2L);
+        header.put("totalSteps", 4L);
+
+        Activity activity = SnapshotCodec.readActivity("act1", header);
+
+        assertEquals("act1", activity.getId());
+        assertEquals("Desayunar", activity.getName());
+        assertEquals(2349, activity.getPictogramId());
+        assertEquals(1700000000000L, activity.getCreatedAt());
+        assertTrue(activity.isCompleted());
+        assertTrue(activity.isSequence());
+        assertEquals(2, activity.getCurrentStepIndex());
+        assertNull(activity.getPictogramKeyword());
+        assertNull(SnapshotCodec.readActivity("act2", "no es una actividad"));
+    }
+
+    @Test
+    public void readActivity_acceptsSequenceFlagWrittenByGetter() {
+        Map<String, Object> header = new HashMap<>();
+        header.put("sequence", true);
+
+        assertTrue(SnapshotCodec.readActivity("act1", header).isSequence());
+    }
+
+    @Test
+    public void writeActivityDefinition_leavesProgressFieldsOut() {
+        Activity activity = new Activity("Vestirse", "09:30", 100, "ropa", "uid1");
+        activity.setId("act1");
+
+        Map<String, Object> map = SnapshotCodec.writeActivityDefinition(activity, 3);
+
+        assertEquals("act1", map.get("id"));
+        assertEquals(true, map.get("isSequence"));
+        assertEquals(3, map.get("totalSteps"));
+        assertFalse(map.containsKey("completed"));
+        assertFalse(map.containsKey("currentStepIndex"));
+    }
+
+    @Test
+    public void writeActivityHeader_roundTripsThroughReadActivity() {
+        Activity activity = new Activity("Lavarse los dientes", "08:15", 2350, "dientes", "uid1");
+        activity.setId("act1");
+        activity.setSequence(true);
+        activity.setCompleted(true);
+        activity.setCurrentStepIndex(2);
+        activity.setCreatedAt(1700000000000L);
+
+        Activity read = SnapshotCodec.readActivity("act1", SnapshotCodec.writeActivityHeader(activity));
+
+        assertEquals("Lavarse los dientes", read.getName());
+        assertEquals("08:15", read.getTime());
+        assertEquals(2350, read.getPictogramId());
+        assertTrue(read.isSequence());
+        assertTrue(read.isCompleted());
+        assertEquals(2, read.getCurrentStepIndex());
+        assertEquals(1700000000000L, read.getCreatedAt());
+    }
+
+    @Test
+    public void userStats_roundTripWithLongValues() {
+        UserStats stats = new UserStats("uid1");
+        stats.setTotalActivitiesCompleted(12);
+        stats.setCurrentStreak(3);
+        stats.setLastActivityDate("2024-05-02");
+
+        // Firebase devuelve los enteros como Long
+        Map<String, Object> stored = new HashMap<>();
+        for (Map.Entry<String, Object> entry : SnapshotCodec.writeUserStats(stats).entrySet()) {
+            Object value = entry.getValue();
+            stored.put(entry.getKey(), value instanceof Integer ? ((Integer) value).longValue() : value);
+        }
+        UserStats read = SnapshotCodec.readUserStats(stored);
+
+        assertEquals("uid1", read.getUserId());
+        assertEquals(12, read.getTotalActivitiesCompleted());
+        assertEquals(3, read.getCurrentStreak());
+        assertEquals("2024-05-02", read.getLastActivityDate());
+        assertNull(SnapshotCodec.readUserStats(null));
+    }
+
+    @Test
+    public void achievementState_onlyUnlockedWhenFlagIsTrue() {
+        assertTrue(SnapshotCodec.readAchievementUnlocked(SnapshotCodec.writeAchievementState(true, 5L)));
+        assertFalse(SnapshotCodec.readAchievementUnlocked(SnapshotCodec.writeAchievementState(false, 0L)));
+        assertFalse(SnapshotCodec.readAchievementUnlocked(null));
+    }
+
+    private static Map<String, Object> stepMap(String id, long stepNumber, boolean completed) {
+        Map<String, Object> step = new HashMap<>();
+        step.put("id", id);
+        step.put("name", "Paso " + id);
+        step.put("pictogramId", 100L + stepNumber);
+        step.put("stepNumber", stepNumber);
+        step.put("completed", completed);
+        return step;
+    }
+}